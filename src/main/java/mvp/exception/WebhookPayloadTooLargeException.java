@@ -0,0 +1,10 @@
+package mvp.exception;
+
+public class WebhookPayloadTooLargeException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public WebhookPayloadTooLargeException(String msg) {
+        super(msg);
+    }
+}
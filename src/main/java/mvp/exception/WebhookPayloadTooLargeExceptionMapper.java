@@ -0,0 +1,18 @@
+package mvp.exception;
+
+import jakarta.ws.rs.core.*;
+import jakarta.ws.rs.ext.*;
+import mvp.dto.ErrorResponse;
+
+@Provider
+public class WebhookPayloadTooLargeExceptionMapper implements ExceptionMapper<WebhookPayloadTooLargeException> {
+
+    // 413 sem Retry-After: a mesma entrega nunca vai caber, o Jira não deve reenviá-la
+    @Override
+    public Response toResponse(WebhookPayloadTooLargeException ex) {
+        return Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE)
+                .entity(new ErrorResponse("Payload muito grande", ex.getMessage()))
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+}
@@ -0,0 +1,10 @@
+package mvp.exception;
+
+public class WebhookRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public WebhookRejectedException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,26 @@
+package mvp.exception;
+
+import jakarta.ws.rs.core.*;
+import jakarta.ws.rs.ext.*;
+import mvp.dto.ErrorResponse;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+@Provider
+public class WebhookRejectedExceptionMapper implements ExceptionMapper<WebhookRejectedException> {
+
+    // 429 (padrão) ou 503
+    @ConfigProperty(name = "webhook.executor.rejection-status", defaultValue = "429")
+    int rejectionStatus;
+
+    @ConfigProperty(name = "webhook.executor.retry-after-seconds", defaultValue = "30")
+    long retryAfterSeconds;
+
+    @Override
+    public Response toResponse(WebhookRejectedException ex) {
+        return Response.status(rejectionStatus)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .entity(new ErrorResponse("Servidor ocupado", ex.getMessage()))
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+}
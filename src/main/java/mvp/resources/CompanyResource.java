@@ -1,13 +1,19 @@
 package mvp.resources;
 
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.json.*;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
-import mvp.service.SupabaseService;
+import jakarta.ws.rs.core.UriInfo;
+import mvp.service.ReactiveSupabaseService;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
 
 import java.util.*;
 import java.util.logging.Logger;
@@ -22,177 +28,199 @@ public class CompanyResource {
     private static final Logger LOGGER = Logger.getLogger(CompanyResource.class.getName());
 
     @Inject
-    SupabaseService supabaseService;
+    ReactiveSupabaseService supabaseService;
 
     // CREATE
     @POST
     @RolesAllowed("user")
-    public Response createCompany(JsonObject companyData) {
+    public Uni<Response> createCompany(JsonObject companyData) {
         String name = companyData.getString("name", "").trim();
 
         if (name.isEmpty()) {
-            return Response.status(Response.Status.BAD_REQUEST)
+            return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
                     .entity(Map.of("message", "Campo obrigatório: name"))
-                    .build();
+                    .build());
         }
 
-        try {
-            Response supabaseResponse = supabaseService.createCompany(companyData.toString());
-
-            if (supabaseResponse.getStatus() == 201) {
-                return Response.status(Response.Status.CREATED)
-                        .entity(Map.of("message", "Empresa criada com sucesso"))
-                        .build();
-            }
-
-            String error = supabaseResponse.readEntity(String.class);
-            LOGGER.severe("Erro Supabase ao criar empresa: " + error);
-            return Response.status(supabaseResponse.getStatus())
-                    .entity(Map.of("message", "Erro ao criar empresa: " + error))
-                    .build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao criar empresa: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro interno ao criar empresa."))
-                    .build();
-        }
+        return supabaseService.createCompany(companyData.toString())
+                .map(supabaseResponse -> {
+                    if (supabaseResponse.statusCode() == 201) {
+                        return Response.status(Response.Status.CREATED)
+                                .entity(Map.of("message", "Empresa criada com sucesso"))
+                                .build();
+                    }
+
+                    String error = supabaseResponse.bodyAsString();
+                    LOGGER.severe("Erro Supabase ao criar empresa: " + error);
+                    return Response.status(supabaseResponse.statusCode())
+                            .entity(Map.of("message", "Erro ao criar empresa: " + error))
+                            .build();
+                })
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao criar empresa: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro interno ao criar empresa."))
+                            .build();
+                });
     }
 
     @GET
     @Path("/company-options")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getCompanyOptions() {
-        try {
-            List<Map<String, Object>> companies = supabaseService.getCompanyOptions().stream()
-                    .map(this::flattenJson)
-                    .collect(Collectors.toList());
-
-            return Response.ok(companies).build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao listar empresas: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro ao listar empresas."))
-                    .build();
-        }
+    public Uni<Response> getCompanyOptions() {
+        return supabaseService.getCompanyOptions()
+                .map(list -> {
+                    List<Map<String, Object>> companies = list.stream()
+                            .map(this::flattenJson)
+                            .collect(Collectors.toList());
+                    return Response.ok(companies).build();
+                })
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao listar empresas: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro ao listar empresas."))
+                            .build();
+                });
     }
 
     // READ ALL
     @GET
     @RolesAllowed("user")
-    public Response getAllCompanies() {
-        try {
-            List<Map<String, Object>> companies = supabaseService.getAllCompanies().stream()
-                    .map(this::flattenJson)
-                    .collect(Collectors.toList());
-
-            return Response.ok(companies).build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao listar empresas: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro ao listar empresas."))
-                    .build();
+    public Uni<Response> getAllCompanies(@QueryParam("limit") Integer limit,
+                                         @QueryParam("after") Long after,
+                                         @Context UriInfo uriInfo) {
+        if (Pagination.requested(limit, after)) {
+            int size = supabaseService.pageSize(limit);
+            return supabaseService.getCompaniesPage(after, size)
+                    .map(rows -> Pagination.page(rows, size, this::flattenJson, uriInfo))
+                    .onFailure().recoverWithItem(e -> {
+                        LOGGER.severe("Erro ao listar empresas: " + e.getMessage());
+                        return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                                .entity(Map.of("message", "Erro ao listar empresas."))
+                                .build();
+                    });
         }
+
+        // Repassa o corpo do PostgREST sem convertê-lo
+        return supabaseService.getAllCompaniesRaw()
+                .map(body -> Response.ok(body, MediaType.APPLICATION_JSON_TYPE).build())
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao listar empresas: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro ao listar empresas."))
+                            .build();
+                });
+    }
+
+    // READ ALL em stream (NDJSON): as linhas vão para a resposta página a página
+    @GET
+    @Path("/stream")
+    @RolesAllowed("user")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<Map<String, Object>> streamCompanies() {
+        return supabaseService.streamCompanies()
+                .map(this::flattenJson)
+                .onFailure().invoke(e -> LOGGER.severe("Erro ao listar empresas em stream: " + e.getMessage()));
     }
 
     // READ BY ID
     @GET
     @RolesAllowed("user")
     @Path("/{id}")
-    public Response getCompanyById(@PathParam("id") Long id) {
-        try {
-            JsonObject company = supabaseService.getCompanyById(id);
-            if (company != null) {
-                return Response.ok(flattenJson(company)).build();
-            }
-            return Response.status(Response.Status.NOT_FOUND)
-                    .entity(Map.of("message", "Empresa não encontrada."))
-                    .build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao buscar empresa por ID: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro ao buscar empresa."))
-                    .build();
-        }
+    public Uni<Response> getCompanyById(@PathParam("id") Long id) {
+        return supabaseService.getCompanyByIdRaw(id)
+                .map(body -> {
+                    if (body != null) {
+                        return Response.ok(body, MediaType.APPLICATION_JSON_TYPE).build();
+                    }
+                    return Response.status(Response.Status.NOT_FOUND)
+                            .entity(Map.of("message", "Empresa não encontrada."))
+                            .build();
+                })
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao buscar empresa por ID: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro ao buscar empresa."))
+                            .build();
+                });
     }
 
     // UPDATE
     @PATCH
     @Path("/{id}")
     @RolesAllowed("user")
-    public Response updateCompany(@PathParam("id") Long id, JsonObject companyJson) {
-        try {
-            JsonObject existingCompany = supabaseService.getCompanyById(id);
-            if (existingCompany == null) {
-                return Response.status(Response.Status.NOT_FOUND)
-                        .entity(Map.of("message", "Empresa não encontrada."))
-                        .build();
-            }
-
-            JsonObjectBuilder builder = Json.createObjectBuilder();
-            companyJson.forEach((key, value) -> {
-                if (!"id".equals(key)) {
-                    builder.add(key, value);
-                }
-            });
-
-            JsonObject updatePayload = builder.build();
-            if (updatePayload.isEmpty()) {
-                return Response.status(Response.Status.BAD_REQUEST)
-                        .entity(Map.of("message", "Nenhum dado para atualizar."))
-                        .build();
-            }
-
-            Response response = supabaseService.updateCompany(id, updatePayload.toString());
-
-            if (response.getStatus() == 204) {
-                return Response.noContent().build();
+    public Uni<Response> updateCompany(@PathParam("id") Long id, JsonObject companyJson) {
+        JsonObjectBuilder builder = Json.createObjectBuilder();
+        companyJson.forEach((key, value) -> {
+            if (!"id".equals(key)) {
+                builder.add(key, value);
             }
-
-            String error = response.readEntity(String.class);
-            LOGGER.severe("Erro Supabase ao atualizar empresa: " + error);
-            return Response.status(response.getStatus())
-                    .entity(Map.of("message", "Erro ao atualizar empresa: " + error))
-                    .build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao atualizar empresa: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro interno ao atualizar empresa."))
-                    .build();
-        }
+        });
+        JsonObject updatePayload = builder.build();
+
+        return supabaseService.getCompanyById(id)
+                .flatMap(existingCompany -> {
+                    if (existingCompany == null) {
+                        return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND)
+                                .entity(Map.of("message", "Empresa não encontrada."))
+                                .build());
+                    }
+
+                    if (updatePayload.isEmpty()) {
+                        return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
+                                .entity(Map.of("message", "Nenhum dado para atualizar."))
+                                .build());
+                    }
+
+                    return supabaseService.updateCompany(id, updatePayload.toString())
+                            .map(response -> {
+                                if (response.statusCode() == 204) {
+                                    return Response.noContent().build();
+                                }
+
+                                String error = response.bodyAsString();
+                                LOGGER.severe("Erro Supabase ao atualizar empresa: " + error);
+                                return Response.status(response.statusCode())
+                                        .entity(Map.of("message", "Erro ao atualizar empresa: " + error))
+                                        .build();
+                            });
+                })
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao atualizar empresa: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro interno ao atualizar empresa."))
+                            .build();
+                });
     }
 
     // DELETE
     @DELETE
     @Path("/{id}")
     @RolesAllowed("user")
-    public Response deleteCompany(@PathParam("id") Long id) {
-        try {
-            Response response = supabaseService.deleteCompany(id);
-            if (response.getStatus() == 204) {
-                return Response.noContent().build();
-            } else if (response.getStatus() == 404) {
-                return Response.status(Response.Status.NOT_FOUND)
-                        .entity(Map.of("message", "Empresa não encontrada."))
-                        .build();
-            }
-
-            String error = response.readEntity(String.class);
-            LOGGER.severe("Erro Supabase ao deletar empresa: " + error);
-            return Response.status(response.getStatus())
-                    .entity(Map.of("message", "Erro ao deletar empresa: " + error))
-                    .build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao deletar empresa: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro interno ao deletar empresa."))
-                    .build();
-        }
+    public Uni<Response> deleteCompany(@PathParam("id") Long id) {
+        return supabaseService.deleteCompany(id)
+                .map(response -> {
+                    if (response.statusCode() == 204) {
+                        return Response.noContent().build();
+                    } else if (response.statusCode() == 404) {
+                        return Response.status(Response.Status.NOT_FOUND)
+                                .entity(Map.of("message", "Empresa não encontrada."))
+                                .build();
+                    }
+
+                    String error = response.bodyAsString();
+                    LOGGER.severe("Erro Supabase ao deletar empresa: " + error);
+                    return Response.status(response.statusCode())
+                            .entity(Map.of("message", "Erro ao deletar empresa: " + error))
+                            .build();
+                })
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao deletar empresa: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro interno ao deletar empresa."))
+                            .build();
+                });
     }
 
     // 🔧 Helper para converter JsonObject em Map plano
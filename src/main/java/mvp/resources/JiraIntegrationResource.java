@@ -2,6 +2,7 @@ package mvp.resources;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Consumes;
@@ -10,16 +11,21 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.client.CloseableHttpClient;
-import jakarta.ws.rs.client.Client;
-import jakarta.ws.rs.client.ClientBuilder;
-import jakarta.ws.rs.client.Entity;
+import mvp.service.OutboundRateLimiter;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
 import jakarta.ws.rs.core.Response.Status;
 
+import java.nio.charset.StandardCharsets;
+
 @Path("/jira")
 public class JiraIntegrationResource {
 
+    @Inject
+    OutboundRateLimiter rateLimiter;
+
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
     public Response createJiraIssue(String webhookPayload, String url, String token_pat, String email) {
@@ -57,17 +63,19 @@ public class JiraIntegrationResource {
                     )
                     .build();
 
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            Client client = ClientBuilder.newClient();
-            Response response = client.target(url)
-                    .request(MediaType.APPLICATION_JSON)
-                    .header("Authorization", "Basic " + getAuthHeader(email, token_pat))
-                    .post(Entity.json(issue));
+        HttpPost request = new HttpPost(url);
+        request.setHeader("Authorization", "Basic " + getAuthHeader(email, token_pat));
+        request.setHeader("Content-Type", MediaType.APPLICATION_JSON);
+        request.setEntity(new StringEntity(issue.toString(), StandardCharsets.UTF_8));
+
+        try (CloseableHttpResponse response = rateLimiter.execute(request)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            EntityUtils.consume(response.getEntity());
 
-            if (response.getStatus() == Status.CREATED.getStatusCode()) {
+            if (statusCode == Status.CREATED.getStatusCode()) {
                 return Response.status(Status.CREATED).entity("Atividade criada com sucesso!").build();
             } else {
-                return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Erro ao criar atividade: " + response.getStatus()).build();
+                return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Erro ao criar atividade: " + statusCode).build();
             }
         }
         } catch (Exception e) {
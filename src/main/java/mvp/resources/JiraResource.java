@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonReader;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
@@ -12,9 +13,8 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPatch;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
+import mvp.service.OutboundRateLimiter;
 
 import java.io.IOException;
 import java.io.StringReader;
@@ -24,11 +24,14 @@ import java.util.Base64;
 @Path("/jira")
 public class JiraResource {
 
+    @Inject
+    OutboundRateLimiter rateLimiter;
+
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
     public Response createIssue(String payload, String url, String user_email, String pat_token) {
 
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
+        try {
             HttpPost request = new HttpPost( url + "/rest/api/3/issue/");
             String auth = user_email + ":" + pat_token;
             String encodedAuth = Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
@@ -40,7 +43,7 @@ public class JiraResource {
             StringEntity entity = new StringEntity(payload, StandardCharsets.UTF_8);
             request.setEntity(entity);
 
-            try (CloseableHttpResponse response = client.execute(request)) {
+            try (CloseableHttpResponse response = rateLimiter.execute(request)) {
                 int statusCode = response.getStatusLine().getStatusCode();
 
                 if (statusCode == 200) {
@@ -52,6 +55,7 @@ public class JiraResource {
 
                     return Response.ok(jsonNode.toString()).build();
                 } else {
+                    EntityUtils.consume(response.getEntity());
                     return Response.status(statusCode).entity("Failed to add comment").build();
                 }
             }
@@ -93,7 +97,7 @@ public class JiraResource {
         // Constrói a URL para adicionar comentário à issue
         String jiraUrl = url + "/rest/api/3/issue/" + issueKey + "/comment";
 
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
+        try {
             HttpPost request = new HttpPost(jiraUrl);
 
             // Gera o cabeçalho de autenticação corretamente
@@ -108,7 +112,7 @@ public class JiraResource {
             StringEntity entity = new StringEntity(jiraCommentPayload, StandardCharsets.UTF_8);
             request.setEntity(entity);
 
-            try (CloseableHttpResponse response = client.execute(request)) {
+            try (CloseableHttpResponse response = rateLimiter.execute(request)) {
                 int statusCode = response.getStatusLine().getStatusCode();
                 String responseBody = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
                 if (statusCode == 201) { // 201 Created indica sucesso
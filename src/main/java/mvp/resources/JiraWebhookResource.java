@@ -6,16 +6,15 @@ import jakarta.json.JsonReader;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonObjectBuilder;
 import mvp.exception.WebhookException;
-import mvp.service.CommentAcceptService;
-import mvp.service.RejectionService;
-import mvp.service.WorkItemService;
 import mvp.service.SupabaseService;
+import mvp.service.WebhookProcessingService;
 import org.eclipse.microprofile.openapi.annotations.media.ExampleObject;
 import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
 import org.jboss.logging.Logger;
@@ -26,7 +25,6 @@ import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
 
 import java.io.StringReader;
-import java.net.URI;
 
 @Path("/jira")
 @Consumes(MediaType.APPLICATION_JSON)
@@ -36,17 +34,14 @@ public class JiraWebhookResource {
 
     private static final Logger LOG = Logger.getLogger(JiraWebhookResource.class);
 
-    @Inject
-    RejectionService rejectionService;
+    // Identificador da entrega, repetido pelo Jira nas retentativas
+    static final String WEBHOOK_IDENTIFIER = "X-Atlassian-Webhook-Identifier";
 
     @Inject
-    CommentAcceptService commentAcceptService;
+    SupabaseService supabaseService;
 
     @Inject
-    WorkItemService workItemService;
-
-    @Inject
-    SupabaseService supabaseService;
+    WebhookProcessingService webhookProcessingService;
 
 
     // =====================================================================
@@ -109,17 +104,17 @@ public class JiraWebhookResource {
                     )
             )
     )
+    @APIResponse(
+            responseCode = "429",
+            description = "Capacidade de processamento esgotada; o Jira deve reenviar após o Retry-After"
+    )
     public Response handleComment(
+            @HeaderParam(WEBHOOK_IDENTIFIER) String deliveryId,
             @Schema(description = "Payload bruto enviado pelo Jira")
             String payload
     ) {
         LOG.info("Recebendo Comentário do Jira: " + payload);
 
-        // Salva o log do payload recebido
-        supabaseService.saveLog("INFO", "Recebendo Comentário do Jira",
-                Json.createObjectBuilder().add("payload_raw", payload).build()
-        );
-
         // --------------- 🔥 VALIDAÇÃO ANTES DA THREAD ---------------
         JsonObject json;
         try {
@@ -144,37 +139,15 @@ public class JiraWebhookResource {
             throw new WebhookException("Campo 'issue' é obrigatório");
         }
 
-        // --------------- 🔄 PROCESSAMENTO ASSÍNCRONO ---------------
-        new Thread(() -> {
-            String key = "N/A";
-            try {
-                JsonObject comment = json.getJsonObject("comment");
-                JsonObject issue = json.getJsonObject("issue");
-
-                String body = comment.getString("body", "");
-                key = issue.getString("key", "N/A");
-                String url = issue.getString("self", "");
-
-                URI uri = new URI(url);
-                String baseUrl = uri.getScheme() + "://" + uri.getHost();
-
-                if (body.toLowerCase().contains("aceito") || body.contains("comment IA")) {
-                    commentAcceptService.processComment("", key, body, "0", baseUrl);
-                    supabaseService.saveLog("INFO", "Comentário do Jira processado",
-                            Json.createObjectBuilder().add("issue_key", key).build());
-                } else {
-                    supabaseService.saveLog("INFO", "Comentário ignorado",
-                            Json.createObjectBuilder().add("issue_key", key).build());
-                }
-            } catch (Exception e) {
-                LOG.error("Erro ao processar comentário para key " + key, e);
-                supabaseService.saveLog("ERROR", "Erro ao processar comentário",
-                        Json.createObjectBuilder()
-                                .add("issue_key", key)
-                                .add("error_message", e.getMessage())
-                                .build());
-            }
-        }).start();
+        // --------------- 🔄 PROCESSAMENTO ASSÍNCRONO (via journal, sem repetições) ---------------
+        if (!webhookProcessingService.accept(WebhookProcessingService.JIRA_COMMENT, deliveryId, json, payload)) {
+            return Response.accepted().build();
+        }
+
+        // Salva o log do payload recebido
+        supabaseService.saveLog("INFO", "Recebendo Comentário do Jira",
+                Json.createObjectBuilder().add("payload_raw", payload).build()
+        );
 
         // --------------- ✔ RETORNO SEM BODY (202) ---------------
         return Response.accepted().build();
@@ -238,14 +211,16 @@ public class JiraWebhookResource {
                     )
             )
     )
+    @APIResponse(
+            responseCode = "429",
+            description = "Capacidade de processamento esgotada; o Jira deve reenviar após o Retry-After"
+    )
     public Response handleEpic(
+            @HeaderParam(WEBHOOK_IDENTIFIER) String deliveryId,
             @Schema(description = "Payload bruto enviado pelo Jira")
             String webhookPayload
     ) {
         LOG.info("Recebendo Épico do Jira: " + webhookPayload);
-        supabaseService.saveLog("INFO", "Recebendo Épico do Jira",
-                Json.createObjectBuilder().add("payload_raw", webhookPayload).build()
-        );
 
         // ----------- 🔥 VALIDAÇÃO INICIAL DO PAYLOAD -----------
         JsonObject json;
@@ -279,35 +254,14 @@ public class JiraWebhookResource {
             throw new WebhookException("Campo 'description' é obrigatório");
         }
 
-        // ----------- 🔄 PROCESSAMENTO ASSÍNCRONO -----------
-        new Thread(() -> {
-            String key = "N/A";
-
-            try {
-                key = issue.getString("key");
-                String title = fields.getString("summary");
-                String description = fields.getString("description");
-                String url = issue.getString("self");
-
-                URI uri = new URI(url);
-                String baseUrl = uri.getScheme() + "://" + uri.getHost();
-
-                workItemService.processWebhook("", key, title, description, "0", baseUrl);
-
-                supabaseService.saveLog("INFO", "Épico do Jira processado com sucesso",
-                        Json.createObjectBuilder()
-                                .add("issue_key", key)
-                                .add("title", title)
-                                .build());
-            } catch (Exception e) {
-                LOG.error("Erro ao processar épico do Jira para key " + key, e);
-                supabaseService.saveLog("ERROR", "Erro ao processar épico do Jira",
-                        Json.createObjectBuilder()
-                                .add("issue_key", key)
-                                .add("error_message", e.getMessage())
-                                .build());
-            }
-        }).start();
+        // ----------- 🔄 PROCESSAMENTO ASSÍNCRONO (via journal, sem repetições) -----------
+        if (!webhookProcessingService.accept(WebhookProcessingService.JIRA_EPIC, deliveryId, json, webhookPayload)) {
+            return Response.accepted().build();
+        }
+
+        supabaseService.saveLog("INFO", "Recebendo Épico do Jira",
+                Json.createObjectBuilder().add("payload_raw", webhookPayload).build()
+        );
 
         // ----------- ✔ RETORNO 202 SEM BODY -----------
         return Response.accepted().build();
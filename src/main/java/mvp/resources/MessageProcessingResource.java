@@ -1,13 +1,21 @@
 package mvp.resources;
 
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.json.*;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
-import mvp.service.SupabaseService;
+import jakarta.ws.rs.core.UriInfo;
+import mvp.service.FlowGraphService;
+import mvp.service.ReactiveSupabaseService;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
 
 import java.util.List;
 import java.util.Map;
@@ -24,12 +32,15 @@ public class MessageProcessingResource {
     private static final Logger LOGGER = Logger.getLogger(MessageProcessingResource.class.getName());
 
     @Inject
-    SupabaseService supabaseService;
+    ReactiveSupabaseService supabaseService;
+
+    @Inject
+    FlowGraphService flowGraphService;
 
     // CREATE
     @POST
     @RolesAllowed("user") // Ajuste as roles conforme sua necessidade de segurança
-    public Response createMessageProcessing(JsonObject flowData) {
+    public Uni<Response> createMessageProcessing(JsonObject flowData) {
         // Validação dos campos obrigatórios conforme a tabela message_processing e o frontend
         String prompt = flowData.getString("prompt", "").trim();
         Long interaction = null;
@@ -53,9 +64,9 @@ public class MessageProcessingResource {
         }
 
         if (prompt.isEmpty() || interaction == null || interactionOrder == null || idCompany == null || idProject == null) {
-            return Response.status(Response.Status.BAD_REQUEST)
+            return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
                     .entity(Map.of("message", "Campos obrigatórios (prompt, interaction, interaction_order, id_company, id_project) são necessários."))
-                    .build();
+                    .build());
         }
 
         // Constrói o payload para o Supabase, usando os nomes de coluna corretos
@@ -73,149 +84,175 @@ public class MessageProcessingResource {
             flowToSupabaseBuilder.add("id_project", idProject);
         }
 
-        try {
-            Response supabaseResponse = supabaseService.createMessageProcessing(flowToSupabaseBuilder.build().toString());
-
-            if (supabaseResponse.getStatus() == 201) {
-                return Response.status(Response.Status.CREATED)
-                        .entity(Map.of("message", "Fluxo criado com sucesso."))
-                        .build();
-            }
-
-            String error = supabaseResponse.readEntity(String.class);
-            LOGGER.severe("Erro Supabase ao criar fluxo: " + error);
-            return Response.status(supabaseResponse.getStatus())
-                    .entity(Map.of("message", "Erro ao criar fluxo: " + error))
-                    .build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao criar fluxo: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro interno ao criar fluxo."))
-                    .build();
-        }
+        return supabaseService.createMessageProcessing(flowToSupabaseBuilder.build().toString())
+                .flatMap(supabaseResponse -> {
+                    if (supabaseResponse.statusCode() == 201) {
+                        return reloadFlows(Response.status(Response.Status.CREATED)
+                                .entity(Map.of("message", "Fluxo criado com sucesso."))
+                                .build());
+                    }
+
+                    String error = supabaseResponse.bodyAsString();
+                    LOGGER.severe("Erro Supabase ao criar fluxo: " + error);
+                    return Uni.createFrom().item(Response.status(supabaseResponse.statusCode())
+                            .entity(Map.of("message", "Erro ao criar fluxo: " + error))
+                            .build());
+                })
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao criar fluxo: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro interno ao criar fluxo."))
+                            .build();
+                });
     }
 
     // READ ALL
     @GET
     @RolesAllowed("user")
-    public Response getAllMessageProcessing() {
-        try {
-            List<JsonObject> flows = supabaseService.getAllMessageProcessing();
-
-            // Mapeia para List<Map<String, Object>> e aplica filterMessageProcessingData
-            List<Map<String, Object>> filteredFlows = flows.stream()
-                    .map(this::filterMessageProcessingData) // Aplica o filtro/conversão para Map
-                    .collect(Collectors.toList());
-
-            return Response.ok(filteredFlows).build(); // Retorna a lista de Map<String, Object>
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao listar fluxos: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro ao listar fluxos."))
-                    .build();
+    public Uni<Response> getAllMessageProcessing(@QueryParam("limit") Integer limit,
+                                                 @QueryParam("after") Long after,
+                                                 @Context UriInfo uriInfo) {
+        if (Pagination.requested(limit, after)) {
+            int size = supabaseService.pageSize(limit);
+            return supabaseService.getMessageProcessingPage(after, size)
+                    .map(rows -> Pagination.page(rows, size, this::filterMessageProcessingData, uriInfo))
+                    .onFailure().recoverWithItem(e -> {
+                        LOGGER.severe("Erro ao listar fluxos: " + e.getMessage());
+                        return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                                .entity(Map.of("message", "Erro ao listar fluxos."))
+                                .build();
+                    });
         }
+
+        // Repassa o corpo do PostgREST sem convertê-lo
+        return supabaseService.getAllMessageProcessingRaw()
+                .map(body -> Response.ok(body, MediaType.APPLICATION_JSON_TYPE).build())
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao listar fluxos: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro ao listar fluxos."))
+                            .build();
+                });
+    }
+
+    // READ ALL em stream (NDJSON): as linhas vão para a resposta página a página
+    @GET
+    @Path("/stream")
+    @RolesAllowed("user")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<Map<String, Object>> streamMessageProcessing() {
+        return supabaseService.streamMessageProcessing()
+                .map(this::filterMessageProcessingData)
+                .onFailure().invoke(e -> LOGGER.severe("Erro ao listar fluxos em stream: " + e.getMessage()));
     }
 
     // READ BY ID
     @GET
     @RolesAllowed("user")
     @Path("/{id}")
-    public Response getMessageProcessingById(@PathParam("id") Long id) {
-        try {
-            JsonObject flow = supabaseService.getMessageProcessingById(id);
-            if (flow != null) {
-                return Response.ok(filterMessageProcessingData(flow)).build(); // Aplica o filtro/conversão para Map
-            }
-            return Response.status(Response.Status.NOT_FOUND)
-                    .entity(Map.of("message", "Fluxo não encontrado."))
-                    .build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao buscar fluxo por ID: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro ao buscar fluxo."))
-                    .build();
-        }
+    public Uni<Response> getMessageProcessingById(@PathParam("id") Long id) {
+        return supabaseService.getMessageProcessingByIdRaw(id)
+                .map(body -> {
+                    if (body != null) {
+                        return Response.ok(body, MediaType.APPLICATION_JSON_TYPE).build();
+                    }
+                    return Response.status(Response.Status.NOT_FOUND)
+                            .entity(Map.of("message", "Fluxo não encontrado."))
+                            .build();
+                })
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao buscar fluxo por ID: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro ao buscar fluxo."))
+                            .build();
+                });
     }
 
     // UPDATE
     @PATCH
     @Path("/{id}")
     @RolesAllowed("user")
-    public Response updateMessageProcessing(@PathParam("id") Long id, JsonObject flowData) {
-        try {
-            JsonObject existingFlow = supabaseService.getMessageProcessingById(id);
-            if (existingFlow == null) {
-                return Response.status(Response.Status.NOT_FOUND)
-                        .entity(Map.of("message", "Fluxo não encontrado para atualização."))
-                        .build();
-            }
-
-            // Constrói o payload de atualização, excluindo o ID e usando os nomes de coluna corretos
-            JsonObjectBuilder updateBuilder = Json.createObjectBuilder();
-            flowData.forEach((key, value) -> {
-                if (!"id".equals(key)) { // Não permite atualização do ID
-                    updateBuilder.add(key, value);
-                }
-            });
-
-            JsonObject updatePayload = updateBuilder.build();
-            if (updatePayload.isEmpty()) {
-                return Response.status(Response.Status.BAD_REQUEST)
-                        .entity(Map.of("message", "Nenhum dado para atualizar."))
-                        .build();
-            }
-
-            Response response = supabaseService.updateMessageProcessing(id, updatePayload.toString());
-
-            if (response.getStatus() == 204) {
-                return Response.noContent().build();
+    public Uni<Response> updateMessageProcessing(@PathParam("id") Long id, JsonObject flowData) {
+        // Constrói o payload de atualização, excluindo o ID e usando os nomes de coluna corretos
+        JsonObjectBuilder updateBuilder = Json.createObjectBuilder();
+        flowData.forEach((key, value) -> {
+            if (!"id".equals(key)) { // Não permite atualização do ID
+                updateBuilder.add(key, value);
             }
-
-            String error = response.readEntity(String.class);
-            LOGGER.severe("Erro Supabase ao atualizar fluxo: " + error);
-            return Response.status(response.getStatus())
-                    .entity(Map.of("message", "Erro ao atualizar fluxo: " + error))
-                    .build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao atualizar fluxo: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro interno ao atualizar fluxo."))
-                    .build();
-        }
+        });
+        JsonObject updatePayload = updateBuilder.build();
+
+        return supabaseService.getMessageProcessingById(id)
+                .flatMap(existingFlow -> {
+                    if (existingFlow == null) {
+                        return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND)
+                                .entity(Map.of("message", "Fluxo não encontrado para atualização."))
+                                .build());
+                    }
+                    if (updatePayload.isEmpty()) {
+                        return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
+                                .entity(Map.of("message", "Nenhum dado para atualizar."))
+                                .build());
+                    }
+
+                    return supabaseService.updateMessageProcessing(id, updatePayload.toString())
+                            .flatMap(response -> {
+                                if (response.statusCode() == 204) {
+                                    return reloadFlows(Response.noContent().build());
+                                }
+
+                                String error = response.bodyAsString();
+                                LOGGER.severe("Erro Supabase ao atualizar fluxo: " + error);
+                                return Uni.createFrom().item(Response.status(response.statusCode())
+                                        .entity(Map.of("message", "Erro ao atualizar fluxo: " + error))
+                                        .build());
+                            });
+                })
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao atualizar fluxo: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro interno ao atualizar fluxo."))
+                            .build();
+                });
     }
 
     // DELETE
     @DELETE
     @Path("/{id}")
     @RolesAllowed("user")
-    public Response deleteMessageProcessing(@PathParam("id") Long id) {
-        try {
-            Response response = supabaseService.deleteMessageProcessing(id);
-
-            if (response.getStatus() == 204) {
-                return Response.noContent().build();
-            } else if (response.getStatus() == 404) {
-                return Response.status(Response.Status.NOT_FOUND)
-                        .entity(Map.of("message", "Fluxo não encontrado para exclusão."))
-                        .build();
-            }
+    public Uni<Response> deleteMessageProcessing(@PathParam("id") Long id) {
+        return supabaseService.deleteMessageProcessing(id)
+                .flatMap(response -> {
+                    if (response.statusCode() == 204) {
+                        return reloadFlows(Response.noContent().build());
+                    } else if (response.statusCode() == 404) {
+                        return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND)
+                                .entity(Map.of("message", "Fluxo não encontrado para exclusão."))
+                                .build());
+                    }
+
+                    String error = response.bodyAsString();
+                    LOGGER.severe("Erro Supabase ao deletar fluxo: " + error);
+                    return Uni.createFrom().item(Response.status(response.statusCode())
+                            .entity(Map.of("message", "Erro ao deletar fluxo: " + error))
+                            .build());
+                })
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao deletar fluxo: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro interno ao deletar fluxo."))
+                            .build();
+                });
+    }
 
-            String error = response.readEntity(String.class);
-            LOGGER.severe("Erro Supabase ao deletar fluxo: " + error);
-            return Response.status(response.getStatus())
-                    .entity(Map.of("message", "Erro ao deletar fluxo: " + error))
-                    .build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao deletar fluxo: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro interno ao deletar fluxo."))
-                    .build();
-        }
+    // O reload do grafo consulta o Supabase de forma bloqueante: roda no pool de workers
+    private Uni<Response> reloadFlows(Response response) {
+        return Uni.createFrom().item(() -> {
+                    flowGraphService.reload();
+                    return response;
+                })
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
     }
 
     // 🔧 Converte JsonObject em Map<String, Object> plano, seguindo o padrão do UserResource
@@ -1,24 +1,22 @@
 package mvp.resources;
 
+import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
-import jakarta.json.JsonNumber;
-import jakarta.json.JsonObject; // Importe JsonObject para o retorno de getMessagesForTokenSummary
-import jakarta.json.JsonString;
-import jakarta.json.JsonValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
-import mvp.service.SupabaseService;
+import mvp.service.TokenSummaryService;
+import mvp.service.TokenUsageRollups;
 import org.jboss.logging.Logger;
 
-import java.util.List; // Importe List
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.Map;
-import java.util.HashMap; // Adicionado para HashMap
-import java.util.stream.Collectors; // Adicionado para Collectors
 
 @Path("/messages")
 @Produces(MediaType.APPLICATION_JSON)
@@ -27,66 +25,71 @@ public class MessageResource {
     private static final Logger LOG = Logger.getLogger(MessageResource.class);
 
     @Inject
-    SupabaseService supabaseService;
+    TokenSummaryService tokenSummaryService;
+
+    @Inject
+    TokenUsageRollups tokenUsageRollups;
 
     /**
-     * Endpoint para buscar dados de mensagens para a sumarização de tokens.
-     * Permite filtrar por empresa e projeto.
+     * Resumo de tokens das mensagens, já agregado por período, projeto e remetente.
+     * Permite filtrar por empresa, projeto e intervalo de datas.
      *
-     * @param companyId Opcional. ID da empresa para filtrar.
-     * @param projectId Opcional. ID do projeto para filtrar.
-     * @return Uma Response contendo uma lista de dados de mensagens.
+     * @param companyId   Opcional. ID da empresa para filtrar.
+     * @param projectId   Opcional. ID do projeto para filtrar.
+     * @param from        Opcional. Data inicial (yyyy-MM-dd, inclusive).
+     * @param to          Opcional. Data final (yyyy-MM-dd, inclusive).
+     * @param granularity Opcional. "day" (padrão) ou "week" para o agrupamento por período.
+     * @return Uma Response com os totais e os agrupamentos.
      */
     @GET
     @Path("/tokens-summary")
     @RolesAllowed({"admin", "user"}) // Ajuste os papéis conforme necessário
-    public Response getTokensSummary(
+    public Uni<Response> getTokensSummary(
             @QueryParam("companyId") Long companyId,
-            @QueryParam("projectId") Long projectId) {
+            @QueryParam("projectId") Long projectId,
+            @QueryParam("from") String from,
+            @QueryParam("to") String to,
+            @QueryParam("granularity") String granularity) {
+        LocalDate fromDate;
+        LocalDate toDate;
+        TokenSummaryService.Granularity period;
         try {
-            // Chama o método síncrono do SupabaseService
-            List<JsonObject> rawData = supabaseService.getMessagesForTokenSummary(companyId, projectId);
-
-            // Converte List<JsonObject> para List<Map<String, Object>> para garantir compatibilidade
-            // e para que o Jackson possa serializar corretamente para JSON no frontend.
-            List<Map<String, Object>> data = rawData.stream()
-                    .map(this::convertJsonObjectToMap)
-                    .collect(Collectors.toList());
-
-            return Response.ok(data).build();
-        } catch (Exception e) {
-            LOG.error("Erro ao buscar resumo de tokens: " + e.getMessage(), e);
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro ao buscar resumo de tokens: " + e.getMessage()))
-                    .build();
+            fromDate = from != null && !from.isBlank() ? LocalDate.parse(from) : null;
+            toDate = to != null && !to.isBlank() ? LocalDate.parse(to) : null;
+            period = granularity != null && !granularity.isBlank()
+                    ? TokenSummaryService.Granularity.valueOf(granularity.trim().toUpperCase())
+                    : TokenSummaryService.Granularity.DAY;
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", "Parâmetros inválidos: datas no formato yyyy-MM-dd e granularity 'day' ou 'week'."))
+                    .build());
         }
-    }
 
-    // Método auxiliar para converter JsonObject em Map<String, Object>
-    private Map<String, Object> convertJsonObjectToMap(JsonObject jsonObject) {
-        Map<String, Object> map = new HashMap<>();
-        jsonObject.forEach((key, value) -> {
-            map.put(key, extractJsonValue(value));
-        });
-        return map;
+        return tokenSummaryService.summarize(companyId, projectId, fromDate, toDate, period)
+                .map(summary -> Response.ok(summary).build())
+                .onFailure().recoverWithItem(e -> {
+                    LOG.error("Erro ao buscar resumo de tokens: " + e.getMessage(), e);
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro ao buscar resumo de tokens: " + e.getMessage()))
+                            .build();
+                });
     }
 
-    // Método auxiliar para extrair o valor de JsonValue
-    private Object extractJsonValue(JsonValue value) {
-        return switch (value.getValueType()) {
-            case STRING -> ((JsonString) value).getString();
-            case NUMBER -> {
-                JsonNumber num = (JsonNumber) value;
-                yield num.isIntegral() ? num.longValue() : num.doubleValue();
-            }
-            case TRUE -> true;
-            case FALSE -> false;
-            case NULL -> null;
-            case OBJECT -> convertJsonObjectToMap(value.asJsonObject()); // Recursivamente para objetos aninhados
-            case ARRAY -> value.asJsonArray().stream()
-                    .map(this::extractJsonValue) // Recursivamente para elementos do array
-                    .collect(Collectors.toList());
-            default -> null; // Para outros tipos não esperados
-        };
+    /**
+     * Recalcula os rollups de tokens a partir de todo o histórico de mensagens.
+     * A carga inicial já é feita na subida com a tabela vazia; use para corrigi-los.
+     */
+    @POST
+    @Path("/tokens-summary/rebuild")
+    @RolesAllowed("admin")
+    public Uni<Response> rebuildTokensSummary() {
+        return tokenUsageRollups.rebuild()
+                .map(keys -> Response.ok(Map.of("message", "Rollups de tokens recalculados.", "keys", keys)).build())
+                .onFailure().recoverWithItem(e -> {
+                    LOG.error("Erro ao recalcular rollups de tokens: " + e.getMessage(), e);
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro ao recalcular rollups de tokens: " + e.getMessage()))
+                            .build();
+                });
     }
 }
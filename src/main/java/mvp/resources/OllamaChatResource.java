@@ -1,21 +1,24 @@
 package mvp.resources;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.json.Json;
+import jakarta.inject.Inject;
 import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
 import jakarta.ws.rs.*;
+import mvp.service.HttpClientService;
+import mvp.service.OllamaEndpointPool;
+import mvp.utils.OllamaStreamReader;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
 
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -25,15 +28,25 @@ public class OllamaChatResource {
 
     private static final Logger LOGGER = Logger.getLogger(OllamaChatResource.class.getName());
 
+    @Inject
+    HttpClientService httpClientService;
+
+    @Inject
+    OllamaEndpointPool endpointPool;
+
     @POST
     @Path("/")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
     public Response chat(String requestBody) {
-        //String url = "http://host.docker.internal:11434/api/chat";  // Atualize a URL se necessário
-        String url = "http://127.0.0.1:11434/api/chat";
-
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
+        // Instância do Ollama escolhida pelo pool (ollama.endpoints)
+        OllamaEndpointPool.Endpoint endpoint = endpointPool.acquire(modelOf(requestBody));
+        String url = endpoint.url() + "/api/chat";
+        long start = System.nanoTime();
+        boolean success = false;
+
+        CloseableHttpClient client = httpClientService.getClient();
+        try {
             HttpPost request = new HttpPost(url);
             request.setHeader("Content-Type", "application/json");
 
@@ -44,31 +57,13 @@ public class OllamaChatResource {
             try (CloseableHttpResponse response = client.execute(request)) {
                 int statusCode = response.getStatusLine().getStatusCode();
                 LOGGER.info("Resposta recebida com status: " + statusCode);
+                success = statusCode < 500;
 
                  if (statusCode == 200) {
-                    String jsonResponse = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
-                    LOGGER.info("Resposta do Ollama: " + jsonResponse);
-
-                    // Use Jackson para processar o JSON
-                    ObjectMapper mapper = new ObjectMapper();
-
-                    // A resposta pode conter múltiplos objetos JSON, então é necessário dividir o jsonResponse
-                    String[] jsonParts = jsonResponse.split("(?<=})\\s*(?=\\{)");
-
-                    // Variável para armazenar o conteúdo concatenado
-                    StringBuilder contentBuilder = new StringBuilder();
-
-                    // Percorrer as mensagens fragmentadas e extrair o campo "content"
-                    for (String jsonPart : jsonParts) {
-                        JsonNode node = mapper.readTree(jsonPart);
-                        JsonNode messageNode = node.get("message");
-                        if (messageNode != null && messageNode.get("content") != null) {
-                            contentBuilder.append(messageNode.get("content").asText());
-                        }
-                    }
+                    // Lê os fragmentos NDJSON direto do stream, sem bufferizar a resposta inteira
+                    String fullContent = OllamaStreamReader.readContent(response.getEntity().getContent());
 
                     // Retornar apenas o conteúdo concatenado
-                    String fullContent = contentBuilder.toString();
                     LOGGER.info("Conteúdo final concatenado");
                     JsonObject chatPayloadObject = Json.createObjectBuilder()
                             .add("content", fullContent)
@@ -76,13 +71,26 @@ public class OllamaChatResource {
                     return Response.ok(chatPayloadObject).build();
 
                 } else {
+                    EntityUtils.consume(response.getEntity());
                     LOGGER.severe("Falha ao enviar para o Ollama. Status: " + statusCode);
                     return Response.status(statusCode).entity("Falha ao enviar para o Ollama").build();
                 }
             }
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Erro ao processar a requisição", e);
+            success = false;
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Ocorreu um erro").build();
+        } finally {
+            endpointPool.release(endpoint, System.nanoTime() - start, success);
+        }
+    }
+
+    // Modelo pedido no payload, para rotear só para instâncias que o possuem
+    private static String modelOf(String requestBody) {
+        try (JsonReader reader = Json.createReader(new StringReader(requestBody))) {
+            return reader.readObject().getString("model", null);
+        } catch (Exception e) {
+            return null;
         }
     }
 }
@@ -6,16 +6,25 @@ import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import dev.langchain4j.model.ollama.OllamaChatModel;
+import dev.langchain4j.model.ollama.OllamaStreamingChatModel;
+import io.smallrye.mutiny.Multi;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonObjectBuilder; // Importar para JsonObjectBuilder
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import mvp.service.OllamaEndpointPool;
+import mvp.service.PersistentChatMemoryStore;
 import mvp.service.SupabaseService; // Importar SupabaseService
 import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.resteasy.reactive.RestStreamElementType;
 
 import java.util.List;
 import java.util.Map;
@@ -34,14 +43,23 @@ public class OllamaChatResources {
 
     private static final Logger LOGGER = Logger.getLogger(OllamaChatResources.class.getName()); // Corrigido o nome da classe do logger
 
-    // Memória por usuário
-    private final Map<String, ChatMemory> userMemories = new ConcurrentHashMap<>();
+    // Memória por usuário (limitada em heap, com as conversas inativas gravadas em disco)
+    @Inject
+    PersistentChatMemoryStore chatMemoryStore;
+
+    // Instâncias do Ollama (ollama.endpoints)
+    @Inject
+    OllamaEndpointPool endpointPool;
+
+    // Modelo usado no chat (ex.: "codellama", "mistral", "phi")
+    @ConfigProperty(name = "ollama.model", defaultValue = "codellama")
+    String modelName;
 
-    // Modelo de linguagem do Ollama
-    private final ChatLanguageModel model = OllamaChatModel.builder()
-            .baseUrl("http://127.0.0.1:11434")  // ajuste se necessário
-            .modelName("codellama")               // ou "mistral", "phi", etc.
-            .build();
+    // Modelo de linguagem do Ollama, um cliente por instância
+    private final Map<String, ChatLanguageModel> models = new ConcurrentHashMap<>();
+
+    // Mesmo modelo, com os tokens entregues à medida que são gerados
+    private final Map<String, StreamingChatLanguageModel> streamingModels = new ConcurrentHashMap<>();
 
     @POST
     @RolesAllowed("user")
@@ -63,15 +81,23 @@ public class OllamaChatResources {
             }
 
             // Recupera ou cria memória do usuário
-            ChatMemory memory = userMemories.computeIfAbsent(userId, id ->
-                    MessageWindowChatMemory.withMaxMessages(10));
+            ChatMemory memory = memoryFor(userId);
 
             // Adiciona a mensagem do usuário à memória
             memory.add(UserMessage.from(userMessage));
 
             // Gera resposta com base na memória
             List<ChatMessage> history = memory.messages();
-            AiMessage aiResponse = model.generate(history).content();
+            AiMessage aiResponse;
+            OllamaEndpointPool.Endpoint endpoint = endpointPool.acquire(modelName);
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                aiResponse = model(endpoint).generate(history).content();
+                success = true;
+            } finally {
+                endpointPool.release(endpoint, System.nanoTime() - start, success);
+            }
 
             // Adiciona a resposta da IA à memória
             memory.add(aiResponse);
@@ -106,4 +132,95 @@ public class OllamaChatResources {
                     .entity("Erro interno no servidor").build();
         }
     }
+
+    /**
+     * Variante em streaming do /chat-v1: cada token é enviado como um evento SSE assim que
+     * o Ollama o gera. Ao final a resposta completa é adicionada à memória do usuário.
+     */
+    @POST
+    @Path("/stream")
+    @RolesAllowed("user")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.TEXT_PLAIN)
+    public Multi<String> chatStream(Map<String, String> json) {
+        String userId = json.get("userId");
+        String userMessage = json.get("message");
+
+        JsonObjectBuilder initialLogContext = Json.createObjectBuilder()
+                .add("userId", userId != null ? userId : "N/A")
+                .add("userMessage", userMessage != null ? userMessage : "N/A");
+        supabaseService.saveLog("INFO", "Mensagem de chat (stream) recebida", initialLogContext.build());
+
+        if (userId == null || userMessage == null || userId.isEmpty() || userMessage.isEmpty()) {
+            supabaseService.saveLog("WARN", "Requisição de chat inválida: userId ou message ausente", initialLogContext.build());
+            return Multi.createFrom().failure(
+                    new BadRequestException("Parâmetros 'userId' e 'message' são obrigatórios"));
+        }
+
+        ChatMemory memory = memoryFor(userId);
+        memory.add(UserMessage.from(userMessage));
+        List<ChatMessage> history = memory.messages();
+
+        return Multi.createFrom().emitter(emitter -> {
+            OllamaEndpointPool.Endpoint endpoint = endpointPool.acquire(modelName);
+            long start = System.nanoTime();
+            streamingModel(endpoint).generate(history, new StreamingResponseHandler<AiMessage>() {
+                @Override
+                public void onNext(String token) {
+                    emitter.emit(token);
+                }
+
+                @Override
+                public void onComplete(dev.langchain4j.model.output.Response<AiMessage> response) {
+                    endpointPool.release(endpoint, System.nanoTime() - start, true);
+                    AiMessage aiResponse = response.content();
+                    memory.add(aiResponse);
+
+                    JsonObjectBuilder responseLogContext = Json.createObjectBuilder()
+                            .add("userId", userId)
+                            .add("userMessage", userMessage)
+                            .add("aiResponse", aiResponse.text());
+                    supabaseService.saveLog("INFO", "Resposta da IA gerada (stream)", responseLogContext.build());
+
+                    emitter.complete();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    endpointPool.release(endpoint, System.nanoTime() - start, false);
+                    LOGGER.log(Level.SEVERE, "Erro no processamento do chat (stream)", error);
+                    JsonObjectBuilder errorLogContext = Json.createObjectBuilder()
+                            .add("userId", userId)
+                            .add("userMessage", userMessage)
+                            .add("errorMessage", String.valueOf(error.getMessage()));
+                    supabaseService.saveLog("ERROR", "Erro no processamento do chat (stream)", errorLogContext.build());
+
+                    emitter.fail(error);
+                }
+            });
+        });
+    }
+
+    private ChatLanguageModel model(OllamaEndpointPool.Endpoint endpoint) {
+        return models.computeIfAbsent(endpoint.url(), url -> OllamaChatModel.builder()
+                .baseUrl(url)
+                .modelName(modelName)
+                .build());
+    }
+
+    private StreamingChatLanguageModel streamingModel(OllamaEndpointPool.Endpoint endpoint) {
+        return streamingModels.computeIfAbsent(endpoint.url(), url -> OllamaStreamingChatModel.builder()
+                .baseUrl(url)
+                .modelName(modelName)
+                .build());
+    }
+
+    // Recupera ou cria a memória do usuário
+    private ChatMemory memoryFor(String userId) {
+        return MessageWindowChatMemory.builder()
+                .id(userId)
+                .maxMessages(10)
+                .chatMemoryStore(chatMemoryStore)
+                .build();
+    }
 }
@@ -0,0 +1,44 @@
+package mvp.resources;
+
+import jakarta.json.JsonObject;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Resposta das listagens paginadas por cursor ({@code ?limit=N&after=<id>}).
+ *
+ * Quando a página veio cheia, o id do último registro é o próximo cursor: vai no header
+ * {@code X-Next-Cursor} e no {@code Link rel="next"}. Página incompleta indica o fim da listagem.
+ */
+final class Pagination {
+
+    private Pagination() {
+    }
+
+    // Sem limit nem after a listagem continua devolvendo a tabela inteira, como antes
+    static boolean requested(Integer limit, Long after) {
+        return limit != null || after != null;
+    }
+
+    static Response page(List<JsonObject> rows, int limit, Function<JsonObject, Map<String, Object>> mapper, UriInfo uriInfo) {
+        List<Map<String, Object>> items = rows.stream()
+                .map(mapper)
+                .collect(Collectors.toList());
+
+        Response.ResponseBuilder response = Response.ok(items);
+        if (!rows.isEmpty() && rows.size() >= limit) {
+            long next = rows.get(rows.size() - 1).getJsonNumber("id").longValue();
+            response.header("X-Next-Cursor", next)
+                    .link(uriInfo.getRequestUriBuilder()
+                            .replaceQueryParam("after", next)
+                            .replaceQueryParam("limit", limit)
+                            .build(), "next");
+        }
+        return response.build();
+    }
+}
@@ -1,13 +1,19 @@
 package mvp.resources;
 
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.json.*; // Certifique-se de que jakarta.json.* está importado
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
-import mvp.service.SupabaseService;
+import jakarta.ws.rs.core.UriInfo;
+import mvp.service.ReactiveSupabaseService;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
 
 import java.util.List;
 import java.util.Map;
@@ -24,12 +30,12 @@ public class ProjectResource {
     private static final Logger LOGGER = Logger.getLogger(ProjectResource.class.getName());
 
     @Inject
-    SupabaseService supabaseService;
+    ReactiveSupabaseService supabaseService;
 
     // CREATE
     @POST
     @RolesAllowed("user") // Ajuste as roles conforme sua necessidade de segurança
-    public Response createProject(JsonObject projectData) {
+    public Uni<Response> createProject(JsonObject projectData) {
         // Validação básica dos campos obrigatórios
         String name = projectData.getString("name", "").trim();
         String key = projectData.getString("key", "").trim(); // 'key' é NOT NULL na tabela
@@ -43,153 +49,173 @@ public class ProjectResource {
         }
 
         if (name.isEmpty() || key.isEmpty() || userId == null || companyId == null) {
-            return Response.status(Response.Status.BAD_REQUEST)
+            return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
                     .entity(Map.of("message", "Campos obrigatórios (name, key, user_id, company_id) são necessários."))
-                    .build();
+                    .build());
         }
 
-        try {
-            Response supabaseResponse = supabaseService.createProject(projectData.toString());
-
-            // A resposta do Supabase para POST geralmente é 201 Created
-            if (supabaseResponse.getStatus() == 201) { // Verifica se o status é 201
-                // Retorna apenas uma mensagem de sucesso, seguindo o padrão do UserResource
-                return Response.status(Response.Status.CREATED)
-                        .entity(Map.of("message", "Projeto criado com sucesso."))
-                        .build();
-            }
-
-            String error = supabaseResponse.readEntity(String.class);
-            LOGGER.severe("Erro Supabase ao criar projeto: " + error);
-            return Response.status(supabaseResponse.getStatus())
-                    .entity(Map.of("message", "Erro ao criar projeto: " + error))
-                    .build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao criar projeto: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro interno ao criar projeto."))
-                    .build();
-        }
+        return supabaseService.createProject(projectData.toString())
+                .map(supabaseResponse -> {
+                    // A resposta do Supabase para POST geralmente é 201 Created
+                    if (supabaseResponse.statusCode() == 201) {
+                        // Retorna apenas uma mensagem de sucesso, seguindo o padrão do UserResource
+                        return Response.status(Response.Status.CREATED)
+                                .entity(Map.of("message", "Projeto criado com sucesso."))
+                                .build();
+                    }
+
+                    String error = supabaseResponse.bodyAsString();
+                    LOGGER.severe("Erro Supabase ao criar projeto: " + error);
+                    return Response.status(supabaseResponse.statusCode())
+                            .entity(Map.of("message", "Erro ao criar projeto: " + error))
+                            .build();
+                })
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao criar projeto: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro interno ao criar projeto."))
+                            .build();
+                });
     }
 
     // READ ALL
     @GET
     @RolesAllowed("user")
-    public Response getAllProjects() {
-        try {
-            // supabaseService.getAllProjects() retorna List<JsonObject>
-            // Mapeia para List<Map<String, Object>> e aplica filterProjectData
-            List<Map<String, Object>> projects = supabaseService.getAllProjects().stream()
-                    .map(this::filterProjectData) // Aplica o filtro/conversão para Map
-                    .collect(Collectors.toList());
-
-            return Response.ok(projects).build(); // Retorna a lista de Map<String, Object>
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao listar projetos: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro ao listar projetos."))
-                    .build();
+    public Uni<Response> getAllProjects(@QueryParam("limit") Integer limit,
+                                        @QueryParam("after") Long after,
+                                        @Context UriInfo uriInfo) {
+        if (Pagination.requested(limit, after)) {
+            int size = supabaseService.pageSize(limit);
+            return supabaseService.getProjectsPage(after, size)
+                    .map(rows -> Pagination.page(rows, size, this::filterProjectData, uriInfo))
+                    .onFailure().recoverWithItem(e -> {
+                        LOGGER.severe("Erro ao listar projetos: " + e.getMessage());
+                        return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                                .entity(Map.of("message", "Erro ao listar projetos."))
+                                .build();
+                    });
         }
+
+        // Repassa o corpo do PostgREST sem convertê-lo
+        return supabaseService.getAllProjectsRaw()
+                .map(body -> Response.ok(body, MediaType.APPLICATION_JSON_TYPE).build())
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao listar projetos: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro ao listar projetos."))
+                            .build();
+                });
+    }
+
+    // READ ALL em stream (NDJSON): as linhas vão para a resposta página a página
+    @GET
+    @Path("/stream")
+    @RolesAllowed("user")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<Map<String, Object>> streamProjects() {
+        return supabaseService.streamProjects()
+                .map(this::filterProjectData)
+                .onFailure().invoke(e -> LOGGER.severe("Erro ao listar projetos em stream: " + e.getMessage()));
     }
 
     // READ BY ID
     @GET
     @RolesAllowed("user")
     @Path("/{id}")
-    public Response getProjectById(@PathParam("id") Long id) {
-        try {
-            JsonObject project = supabaseService.getProjectById(id);
-            if (project != null) {
-                return Response.ok(filterProjectData(project)).build(); // Aplica o filtro/conversão para Map
-            }
-            return Response.status(Response.Status.NOT_FOUND)
-                    .entity(Map.of("message", "Projeto não encontrado."))
-                    .build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao buscar projeto por ID: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro ao buscar projeto."))
-                    .build();
-        }
+    public Uni<Response> getProjectById(@PathParam("id") Long id) {
+        return supabaseService.getProjectByIdRaw(id)
+                .map(body -> {
+                    if (body != null) {
+                        return Response.ok(body, MediaType.APPLICATION_JSON_TYPE).build();
+                    }
+                    return Response.status(Response.Status.NOT_FOUND)
+                            .entity(Map.of("message", "Projeto não encontrado."))
+                            .build();
+                })
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao buscar projeto por ID: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro ao buscar projeto."))
+                            .build();
+                });
     }
 
     // UPDATE
     @PATCH
     @Path("/{id}")
     @RolesAllowed("user")
-    public Response updateProject(@PathParam("id") Long id, JsonObject projectJson) {
-        try {
-            JsonObject existingProject = supabaseService.getProjectById(id);
-            if (existingProject == null) {
-                return Response.status(Response.Status.NOT_FOUND)
-                        .entity(Map.of("message", "Projeto não encontrado para atualização."))
-                        .build();
+    public Uni<Response> updateProject(@PathParam("id") Long id, JsonObject projectJson) {
+        JsonObjectBuilder builder = Json.createObjectBuilder();
+        projectJson.forEach((key, value) -> {
+            if (!"id".equals(key)) { // Não permite atualização do ID
+                builder.add(key, value);
             }
-
-            JsonObjectBuilder builder = Json.createObjectBuilder();
-            projectJson.forEach((key, value) -> {
-                if (!"id".equals(key)) { // Não permite atualização do ID
-                    builder.add(key, value);
-                }
-            });
-
-            JsonObject updatePayload = builder.build();
-            if (updatePayload.isEmpty()) {
-                return Response.status(Response.Status.BAD_REQUEST)
-                        .entity(Map.of("message", "Nenhum dado para atualizar."))
-                        .build();
-            }
-
-            Response response = supabaseService.updateProject(id, updatePayload.toString());
-
-            if (response.getStatus() == 204) {
-                return Response.noContent().build();
-            }
-
-            String error = response.readEntity(String.class);
-            LOGGER.severe("Erro Supabase ao atualizar projeto: " + error);
-            return Response.status(response.getStatus())
-                    .entity(Map.of("message", "Erro ao atualizar projeto: " + error))
-                    .build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao atualizar projeto: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro interno ao atualizar projeto."))
-                    .build();
-        }
+        });
+        JsonObject updatePayload = builder.build();
+
+        return supabaseService.getProjectById(id)
+                .flatMap(existingProject -> {
+                    if (existingProject == null) {
+                        return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND)
+                                .entity(Map.of("message", "Projeto não encontrado para atualização."))
+                                .build());
+                    }
+
+                    if (updatePayload.isEmpty()) {
+                        return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
+                                .entity(Map.of("message", "Nenhum dado para atualizar."))
+                                .build());
+                    }
+
+                    return supabaseService.updateProject(id, updatePayload.toString())
+                            .map(response -> {
+                                if (response.statusCode() == 204) {
+                                    return Response.noContent().build();
+                                }
+
+                                String error = response.bodyAsString();
+                                LOGGER.severe("Erro Supabase ao atualizar projeto: " + error);
+                                return Response.status(response.statusCode())
+                                        .entity(Map.of("message", "Erro ao atualizar projeto: " + error))
+                                        .build();
+                            });
+                })
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao atualizar projeto: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro interno ao atualizar projeto."))
+                            .build();
+                });
     }
 
     // DELETE
     @DELETE
     @Path("/{id}")
     @RolesAllowed("user")
-    public Response deleteProject(@PathParam("id") Long id) {
-        try {
-            Response response = supabaseService.deleteProject(id);
-            if (response.getStatus() == 204) {
-                return Response.noContent().build();
-            } else if (response.getStatus() == 404) {
-                return Response.status(Response.Status.NOT_FOUND)
-                        .entity(Map.of("message", "Projeto não encontrado para exclusão."))
-                        .build();
-            }
-
-            String error = response.readEntity(String.class);
-            LOGGER.severe("Erro Supabase ao deletar projeto: " + error);
-            return Response.status(response.getStatus())
-                    .entity(Map.of("message", "Erro ao deletar projeto: " + error))
-                    .build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao deletar projeto: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro interno ao deletar projeto."))
-                    .build();
-        }
+    public Uni<Response> deleteProject(@PathParam("id") Long id) {
+        return supabaseService.deleteProject(id)
+                .map(response -> {
+                    if (response.statusCode() == 204) {
+                        return Response.noContent().build();
+                    } else if (response.statusCode() == 404) {
+                        return Response.status(Response.Status.NOT_FOUND)
+                                .entity(Map.of("message", "Projeto não encontrado para exclusão."))
+                                .build();
+                    }
+
+                    String error = response.bodyAsString();
+                    LOGGER.severe("Erro Supabase ao deletar projeto: " + error);
+                    return Response.status(response.statusCode())
+                            .entity(Map.of("message", "Erro ao deletar projeto: " + error))
+                            .build();
+                })
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao deletar projeto: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro interno ao deletar projeto."))
+                            .build();
+                });
     }
 
     // 🔧 Converte JsonObject em Map<String, Object> plano
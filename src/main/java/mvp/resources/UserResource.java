@@ -1,14 +1,23 @@
 package mvp.resources;
 
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.mutiny.core.buffer.Buffer;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.json.*;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
 import mvp.service.AuthService;
-import mvp.service.SupabaseService;
+import mvp.service.ReactiveSupabaseService;
+import mvp.utils.JsonFieldFilter;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
 
 import java.util.*;
 import java.util.logging.Logger;
@@ -22,12 +31,15 @@ public class UserResource {
 
     private static final Logger LOGGER = Logger.getLogger(UserResource.class.getName());
 
-    @Inject SupabaseService supabaseService;
+    // Campos que nunca saem nas respostas de usuário
+    private static final Set<String> HIDDEN_FIELDS = Set.of("password_hash");
+
+    @Inject ReactiveSupabaseService supabaseService;
     @Inject AuthService authService;
 
     @POST
     @RolesAllowed("user")
-    public Response createUser(JsonObject userData) {
+    public Uni<Response> createUser(JsonObject userData) {
         String username = userData.getString("username", "").trim();
         String password = userData.getString("password", "").trim();
         String name     = userData.getString("name", "").trim();
@@ -41,172 +53,211 @@ public class UserResource {
         boolean isResponsible = userData.getBoolean("is_responsible", false);
 
         if (username.isEmpty() || password.isEmpty() || name.isEmpty() || email.isEmpty() || role.isEmpty() || companyId == null || companyId <= 0) {
-            return Response.status(Response.Status.BAD_REQUEST)
+            return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
                     .entity(Map.of("message", "Campos obrigatórios: username, password, name, email, role, company_id"))
-                    .build();
+                    .build());
         }
 
-        try {
-            if (supabaseService.getUserByUsername(username) != null) {
-                return Response.status(Response.Status.CONFLICT)
-                        .entity(Map.of("message", "Usuário com este nome já existe."))
-                        .build();
-            }
-
-            String hashedPassword = authService.hashPassword(password);
-
-            JsonObject userToSupabase = Json.createObjectBuilder()
-                    .add("username", username)
-                    .add("password_hash", hashedPassword)
-                    .add("name", name)
-                    .add("email", email)
-                    .add("role", role)
-                    .add("company_id", companyId)
-                    .add("is_responsible", isResponsible)
-                    .build();
-
-            Response supabaseResponse = supabaseService.createUser(userToSupabase.toString());
+        return supabaseService.getUserByUsername(username)
+                .flatMap(existingUser -> {
+                    if (existingUser != null) {
+                        return Uni.createFrom().item(Response.status(Response.Status.CONFLICT)
+                                .entity(Map.of("message", "Usuário com este nome já existe."))
+                                .build());
+                    }
+
+                    return hashPassword(password)
+                            .flatMap(hashedPassword -> {
+                                JsonObject userToSupabase = Json.createObjectBuilder()
+                                        .add("username", username)
+                                        .add("password_hash", hashedPassword)
+                                        .add("name", name)
+                                        .add("email", email)
+                                        .add("role", role)
+                                        .add("company_id", companyId)
+                                        .add("is_responsible", isResponsible)
+                                        .build();
+                                return supabaseService.createUser(userToSupabase.toString());
+                            })
+                            .map(supabaseResponse -> {
+                                if (supabaseResponse.statusCode() == 201) {
+                                    return Response.status(Response.Status.CREATED)
+                                            .entity(Map.of("message", "Usuário criado com sucesso."))
+                                            .build();
+                                }
+
+                                String errorDetails = supabaseResponse.bodyAsString();
+                                LOGGER.severe("Erro Supabase ao criar usuário: " + errorDetails);
+                                return Response.status(supabaseResponse.statusCode())
+                                        .entity(Map.of("message", "Erro ao criar usuário: " + errorDetails))
+                                        .build();
+                            });
+                })
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao criar usuário: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro interno ao criar usuário."))
+                            .build();
+                });
+    }
 
-            if (supabaseResponse.getStatus() == 201) {
-                return Response.status(Response.Status.CREATED)
-                        .entity(Map.of("message", "Usuário criado com sucesso."))
-                        .build();
-            }
 
-            String errorDetails = supabaseResponse.readEntity(String.class);
-            LOGGER.severe("Erro Supabase ao criar usuário: " + errorDetails);
-            return Response.status(supabaseResponse.getStatus())
-                    .entity(Map.of("message", "Erro ao criar usuário: " + errorDetails))
-                    .build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao criar usuário: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro interno ao criar usuário."))
-                    .build();
+    @GET
+    @RolesAllowed("user")
+    public Uni<Response> getAllUsers(@QueryParam("limit") Integer limit,
+                                     @QueryParam("after") Long after,
+                                     @Context UriInfo uriInfo) {
+        if (Pagination.requested(limit, after)) {
+            int size = supabaseService.pageSize(limit);
+            return supabaseService.getUsersPage(after, size)
+                    .map(rows -> Pagination.page(rows, size, this::filterUserData, uriInfo))
+                    .onFailure().recoverWithItem(e -> {
+                        LOGGER.severe("Erro ao listar usuários: " + e.getMessage());
+                        return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                                .entity(Map.of("message", "Erro ao listar usuários."))
+                                .build();
+                    });
         }
-    }
 
+        // Repassa o corpo do PostgREST sem convertê-lo
+        return supabaseService.getAllUsersRaw()
+                .map(body -> Response.ok(withoutPasswordHash(body), MediaType.APPLICATION_JSON_TYPE).build())
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao listar usuários: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro ao listar usuários."))
+                            .build();
+                });
+    }
 
+    // READ ALL em stream (NDJSON): as linhas vão para a resposta página a página
     @GET
+    @Path("/stream")
     @RolesAllowed("user")
-    public Response getAllUsers() {
-        try {
-            List<Map<String, Object>> users = supabaseService.getAllUsersAsList().stream()
-                    .map(this::filterUserData)
-                    .collect(Collectors.toList());
-
-            return Response.ok(users).build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao listar usuários: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro ao listar usuários."))
-                    .build();
-        }
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<Map<String, Object>> streamUsers() {
+        return supabaseService.streamUsers()
+                .map(this::filterUserData)
+                .onFailure().invoke(e -> LOGGER.severe("Erro ao listar usuários em stream: " + e.getMessage()));
     }
 
     @GET
     @Path("/{id}")
     @RolesAllowed("user")
-    public Response getUserById(@PathParam("id") Long id) {
-        try {
-            JsonObject user = supabaseService.getUserById(id);
-            if (user != null) {
-                return Response.ok(filterUserData(user)).build();
-            }
-            return Response.status(Response.Status.NOT_FOUND)
-                    .entity(Map.of("message", "Usuário não encontrado."))
-                    .build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao buscar usuário por ID: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro ao buscar usuário."))
-                    .build();
-        }
+    public Uni<Response> getUserById(@PathParam("id") Long id) {
+        return supabaseService.getUserByIdRaw(id)
+                .map(body -> {
+                    if (body != null) {
+                        return Response.ok(withoutPasswordHash(body), MediaType.APPLICATION_JSON_TYPE).build();
+                    }
+                    return Response.status(Response.Status.NOT_FOUND)
+                            .entity(Map.of("message", "Usuário não encontrado."))
+                            .build();
+                })
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao buscar usuário por ID: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro ao buscar usuário."))
+                            .build();
+                });
     }
 
     @PATCH
     @Path("/{id}")
     @RolesAllowed("user")
-    public Response updateUser(@PathParam("id") Long id, JsonObject userData) {
-        try {
-            JsonObject existingUser = supabaseService.getUserById(id);
-            if (existingUser == null) {
-                return Response.status(Response.Status.NOT_FOUND)
-                        .entity(Map.of("message", "Usuário não encontrado."))
-                        .build();
-            }
-
-            JsonObjectBuilder updateBuilder = Json.createObjectBuilder();
-            userData.forEach((key, value) -> {
-                if ("password".equals(key)) {
-                    String newPassword = ((JsonString) value).getString();
-                    updateBuilder.add("password_hash", authService.hashPassword(newPassword));
-                } else if (!"id".equals(key) && !"password_hash".equals(key)) {
-                    updateBuilder.add(key, value);
-                }
-            });
-
-            JsonObject updatePayload = updateBuilder.build();
-
-            if (updatePayload.isEmpty()) {
-                return Response.status(Response.Status.BAD_REQUEST)
-                        .entity(Map.of("message", "Nenhum dado para atualizar."))
-                        .build();
-            }
-
-            Response supabaseResponse = supabaseService.updateUser(id, updatePayload.toString());
-
-            if (supabaseResponse.getStatus() == 204) {
-                return Response.noContent().build();
-            }
-
-            String errorDetails = supabaseResponse.readEntity(String.class);
-            LOGGER.severe("Erro Supabase ao atualizar usuário: " + errorDetails);
-            return Response.status(supabaseResponse.getStatus())
-                    .entity(Map.of("message", "Erro ao atualizar: " + errorDetails))
-                    .build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao atualizar usuário: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro interno ao atualizar usuário."))
-                    .build();
-        }
+    public Uni<Response> updateUser(@PathParam("id") Long id, JsonObject userData) {
+        return supabaseService.getUserById(id)
+                .flatMap(existingUser -> {
+                    if (existingUser == null) {
+                        return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND)
+                                .entity(Map.of("message", "Usuário não encontrado."))
+                                .build());
+                    }
+
+                    Uni<String> passwordHash = userData.containsKey("password")
+                            ? hashPassword(userData.getString("password"))
+                            : Uni.createFrom().nullItem();
+
+                    return passwordHash.flatMap(hash -> {
+                        JsonObjectBuilder updateBuilder = Json.createObjectBuilder();
+                        userData.forEach((key, value) -> {
+                            if ("password".equals(key)) {
+                                updateBuilder.add("password_hash", hash);
+                            } else if (!"id".equals(key) && !"password_hash".equals(key)) {
+                                updateBuilder.add(key, value);
+                            }
+                        });
+
+                        JsonObject updatePayload = updateBuilder.build();
+
+                        if (updatePayload.isEmpty()) {
+                            return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
+                                    .entity(Map.of("message", "Nenhum dado para atualizar."))
+                                    .build());
+                        }
+
+                        return supabaseService.updateUser(id, updatePayload.toString())
+                                .map(supabaseResponse -> {
+                                    if (supabaseResponse.statusCode() == 204) {
+                                        return Response.noContent().build();
+                                    }
+
+                                    String errorDetails = supabaseResponse.bodyAsString();
+                                    LOGGER.severe("Erro Supabase ao atualizar usuário: " + errorDetails);
+                                    return Response.status(supabaseResponse.statusCode())
+                                            .entity(Map.of("message", "Erro ao atualizar: " + errorDetails))
+                                            .build();
+                                });
+                    });
+                })
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao atualizar usuário: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro interno ao atualizar usuário."))
+                            .build();
+                });
     }
 
     @DELETE
     @Path("/{id}")
     @RolesAllowed("user")
-    public Response deleteUser(@PathParam("id") Long id) {
-        try {
-            Response supabaseResponse = supabaseService.deleteUser(id);
-
-            if (supabaseResponse.getStatus() == 204) {
-                return Response.noContent().build();
-            } else if (supabaseResponse.getStatus() == 404) {
-                return Response.status(Response.Status.NOT_FOUND)
-                        .entity(Map.of("message", "Usuário não encontrado."))
-                        .build();
-            }
+    public Uni<Response> deleteUser(@PathParam("id") Long id) {
+        return supabaseService.deleteUser(id)
+                .map(supabaseResponse -> {
+                    if (supabaseResponse.statusCode() == 204) {
+                        return Response.noContent().build();
+                    } else if (supabaseResponse.statusCode() == 404) {
+                        return Response.status(Response.Status.NOT_FOUND)
+                                .entity(Map.of("message", "Usuário não encontrado."))
+                                .build();
+                    }
+
+                    String errorDetails = supabaseResponse.bodyAsString();
+                    LOGGER.severe("Erro Supabase ao deletar usuário: " + errorDetails);
+                    return Response.status(supabaseResponse.statusCode())
+                            .entity(Map.of("message", "Erro ao deletar usuário: " + errorDetails))
+                            .build();
+                })
+                .onFailure().recoverWithItem(e -> {
+                    LOGGER.severe("Erro ao deletar usuário: " + e.getMessage());
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity(Map.of("message", "Erro interno ao deletar usuário."))
+                            .build();
+                });
+    }
 
-            String errorDetails = supabaseResponse.readEntity(String.class);
-            LOGGER.severe("Erro Supabase ao deletar usuário: " + errorDetails);
-            return Response.status(supabaseResponse.getStatus())
-                    .entity(Map.of("message", "Erro ao deletar usuário: " + errorDetails))
-                    .build();
-
-        } catch (Exception e) {
-            LOGGER.severe("Erro ao deletar usuário: " + e.getMessage());
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(Map.of("message", "Erro interno ao deletar usuário."))
-                    .build();
-        }
+    // BCrypt é custoso em CPU: roda no pool de workers para não bloquear o event loop
+    private Uni<String> hashPassword(String password) {
+        return Uni.createFrom().item(() -> authService.hashPassword(password))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    // Remove o password_hash direto dos bytes da resposta do PostgREST
+    private byte[] withoutPasswordHash(Buffer body) {
+        return JsonFieldFilter.exclude(body.getBytes(), HIDDEN_FIELDS);
     }
 
-    // 🔧 Converte JsonObject aninhado em Map<String, Object> plano
     private Map<String, Object> filterUserData(JsonObject user) {
         Map<String, Object> flatUser = new HashMap<>();
         user.forEach((key, value) -> {
@@ -0,0 +1,60 @@
+package mvp.resources;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import mvp.service.WebhookJournal;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.jboss.logging.Logger;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+@Path("/webhook-journal")
+@Produces(MediaType.APPLICATION_JSON)
+@Tag(name = "Webhook Journal", description = "Reprocessamento de webhooks gravados no journal local")
+public class WebhookJournalResource {
+
+    private static final Logger LOG = Logger.getLogger(WebhookJournalResource.class);
+
+    @Inject
+    WebhookJournal webhookJournal;
+
+    /**
+     * Reprocessa os webhooks recebidos entre {@code from} e {@code to} (ISO-8601),
+     * por exemplo após uma indisponibilidade do Ollama.
+     */
+    @POST
+    @Path("/replay")
+    @RolesAllowed("user")
+    @Operation(summary = "Reprocessa webhooks de um intervalo de tempo")
+    public Response replay(@QueryParam("from") String from, @QueryParam("to") String to) {
+        if (!webhookJournal.isEnabled()) {
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(Map.of("message", "Journal de webhooks desabilitado."))
+                    .build();
+        }
+
+        Instant start;
+        Instant end;
+        try {
+            start = Instant.parse(from);
+            end = to != null ? Instant.parse(to) : Instant.now();
+        } catch (NullPointerException | DateTimeParseException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", "Parâmetros 'from' e 'to' devem estar no formato ISO-8601."))
+                    .build();
+        }
+
+        int count = webhookJournal.replay(start, end);
+        LOG.info("Replay solicitado de " + start + " a " + end + ": " + count + " webhooks");
+        return Response.accepted(Map.of("replayed", count)).build();
+    }
+}
@@ -1,9 +1,9 @@
 import jakarta.inject.Inject;
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
-import jakarta.json.JsonObjectBuilder;
 import jakarta.json.JsonReader;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
@@ -11,7 +11,7 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
 import mvp.service.SupabaseService;
-import mvp.service.WorkItemService;
+import mvp.service.WebhookProcessingService;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
@@ -22,7 +22,6 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.jboss.logging.Logger;
 
 import java.io.StringReader;
-import java.net.URI;
 
 @Path("/webhook")
 @Consumes(MediaType.APPLICATION_JSON)
@@ -35,7 +34,7 @@ public class WebhookResource {
     SupabaseService supabaseService;
 
     @Inject
-    WorkItemService workItemService;
+    WebhookProcessingService webhookProcessingService;
 
     // ---------------------------------------------------------------
     //  ENDPOINT EPIC DO JIRA
@@ -58,7 +57,12 @@ public class WebhookResource {
                     schema = @Schema(example = "{ \"error\": \"Invalid JSON\" }")
             )
     )
+    @APIResponse(
+            responseCode = "429",
+            description = "Capacidade de processamento esgotada; o Jira deve reenviar após o Retry-After"
+    )
     public Response handleEpic(
+            @HeaderParam("X-Atlassian-Webhook-Identifier") String deliveryId,
             @RequestBody(
                     required = true,
                     description = "Payload bruto enviado pelo Jira",
@@ -89,12 +93,6 @@ public class WebhookResource {
 
         LOG.info("Recebendo Épico do Jira: " + webhookPayload);
 
-        supabaseService.saveLog(
-                "INFO",
-                "Recebendo Épico do Jira",
-                Json.createObjectBuilder().add("payload_raw", webhookPayload).build()
-        );
-
         // -------------------------------------------------------
         // 1) VALIDAÇÃO DE JSON MALFORMADO
         // -------------------------------------------------------
@@ -120,59 +118,18 @@ public class WebhookResource {
         }
 
         // -------------------------------------------------------
-        // 2) PROCESSAMENTO ASSÍNCRONO
+        // 2) PROCESSAMENTO ASSÍNCRONO (entregas repetidas são ignoradas)
         // -------------------------------------------------------
-        new Thread(() -> processEpic(json)).start();
-
-        return Response.accepted().build();
-    }
-
-    // ---------------------------------------------------------------
-    //  MÉTODO INTERNO: PROCESSAMENTO DO EPIC
-    // ---------------------------------------------------------------
-    private void processEpic(JsonObject jsonPayload) {
-        String key = "N/A";
-
-        try {
-
-            JsonObject issue = jsonPayload.getJsonObject("issue");
-            JsonObject fields = issue.getJsonObject("fields");
-
-            key = issue.getString("key");
-            String title = fields.getString("summary", "Sem título");
-            String description = fields.getString("description", "Sem descrição");
-            String url = issue.getString("self");
-
-            URI uri = new URI(url);
-            String baseUrl = uri.getScheme() + "://" + uri.getHost();
-
-            workItemService.processWebhook("", key, title, description, "0", baseUrl);
-
-            supabaseService.saveLog(
-                    "INFO",
-                    "Épico processado com sucesso",
-                    Json.createObjectBuilder()
-                            .add("issue_key", key)
-                            .add("title", title)
-                            .build()
-            );
-
-        } catch (Exception e) {
-            LOG.error("Erro ao processar épico do Jira (key=" + key + "): " + e.getMessage(), e);
-
-            JsonObjectBuilder err = Json.createObjectBuilder()
-                    .add("issue_key", key)
-                    .add("error_message", e.getMessage());
+        if (!webhookProcessingService.accept(WebhookProcessingService.WEBHOOK_EPIC, deliveryId, json, webhookPayload)) {
+            return Response.accepted().build();
+        }
 
-            if (e.getCause() != null) {
-                err.add("cause", e.getCause().getMessage());
-            }
+        supabaseService.saveLog(
+                "INFO",
+                "Recebendo Épico do Jira",
+                Json.createObjectBuilder().add("payload_raw", webhookPayload).build()
+        );
 
-            supabaseService.saveLog(
-                    "ERROR",
-                    "Erro ao processar épico",
-                    err.build()
-            );
-        }
+        return Response.accepted().build();
     }
 }
@@ -4,6 +4,7 @@ package mvp.resources;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.inject.Inject;
 import jakarta.json.*;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.client.Client;
@@ -14,12 +15,11 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPatch;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
 
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import mvp.service.OutboundRateLimiter;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import java.io.IOException;
@@ -41,17 +41,20 @@ public class WorkItemResource {
     private static final String BASE_URL = "https://dev.azure.com/" + ORGANIZATION + "/" + PROJECT + "/_apis/wit/workitems/";
     String comment = "*** comment Test *** ";
 
+    @Inject
+    OutboundRateLimiter rateLimiter;
+
     @GET
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
     public Response getWorkItem(@PathParam("id") int id) {
         String url = BASE_URL + id + "?api-version=6.0";
 
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
+        try {
             HttpGet request = new HttpGet(url);
             request.setHeader("Authorization", "Basic " + Base64.getEncoder().encodeToString((":".concat(PAT)).getBytes()));
 
-            try (CloseableHttpResponse response = client.execute(request)) {
+            try (CloseableHttpResponse response = rateLimiter.execute(request)) {
                 if (response.getStatusLine().getStatusCode() == 200) {
                     String json = EntityUtils.toString(response.getEntity());
 
@@ -68,6 +71,7 @@ public class WorkItemResource {
 
                     return Response.ok(jsonNode.toString()).build();
                 } else {
+                    EntityUtils.consume(response.getEntity());
                     return Response.status(response.getStatusLine().getStatusCode()).entity("Failed to fetch work item").build();
                 }
             }
@@ -107,7 +111,7 @@ public class WorkItemResource {
                 + "]";
         //String jsonPayload = jsonPayloadObject.toString();
 
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
+        try {
             HttpPatch request = new HttpPatch(url);
             String authHeader = "Basic " + Base64.getEncoder().encodeToString((":".concat(PAT)).getBytes());
             request.setHeader("Authorization", authHeader);
@@ -117,7 +121,7 @@ public class WorkItemResource {
             StringEntity entity = new StringEntity(jsonPayload, StandardCharsets.UTF_8);
             request.setEntity(entity);
 
-            try (CloseableHttpResponse response = client.execute(request)) {
+            try (CloseableHttpResponse response = rateLimiter.execute(request)) {
                 int statusCode = response.getStatusLine().getStatusCode();
 
                 if (statusCode == 200) {
@@ -129,6 +133,7 @@ public class WorkItemResource {
 
                     return Response.ok(jsonNode.toString()).build();
                 } else {
+                    EntityUtils.consume(response.getEntity());
                     return Response.status(statusCode).entity("Failed to add comment").build();
                 }
             }
@@ -145,7 +150,7 @@ public class WorkItemResource {
     public Response updateWorkItem(@PathParam("id") int id, String jsonPayload) {
         String url = BASE_URL + id + "?api-version=7.1";
 
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
+        try {
             HttpPatch request = new HttpPatch(url);
             String authHeader = "Basic " + Base64.getEncoder().encodeToString((":".concat(PAT)).getBytes());
             request.setHeader("Authorization", authHeader);
@@ -155,7 +160,7 @@ public class WorkItemResource {
             StringEntity entity = new StringEntity(jsonPayload);
             request.setEntity(entity);
 
-            try (CloseableHttpResponse response = client.execute(request)) {
+            try (CloseableHttpResponse response = rateLimiter.execute(request)) {
                 int statusCode = response.getStatusLine().getStatusCode();
 
                 if (statusCode == 200) {
@@ -167,6 +172,7 @@ public class WorkItemResource {
 
                     return Response.ok(jsonNode.toString()).build();
                 } else {
+                    EntityUtils.consume(response.getEntity());
                     return Response.status(statusCode).entity("Failed to update work item").build();
                 }
             }
@@ -183,7 +189,7 @@ public class WorkItemResource {
     public Response createWorkItem(@PathParam("type") String type, String jsonPayload) {
         String url = BASE_URL + "$" + type + "?api-version=6.0";
 
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
+        try {
             HttpPost request = new HttpPost(url);
             String authHeader = "Basic " + Base64.getEncoder().encodeToString((":".concat(PAT)).getBytes());
             request.setHeader("Authorization", authHeader);
@@ -193,7 +199,7 @@ public class WorkItemResource {
             StringEntity entity = new StringEntity(jsonPayload);
             request.setEntity(entity);
 
-            try (CloseableHttpResponse response = client.execute(request)) {
+            try (CloseableHttpResponse response = rateLimiter.execute(request)) {
                 int statusCode = response.getStatusLine().getStatusCode();
 
                 if (statusCode == 200 || statusCode == 201) {
@@ -205,6 +211,7 @@ public class WorkItemResource {
 
                     return Response.ok(jsonNode.toString()).build();
                 } else {
+                    EntityUtils.consume(response.getEntity());
                     return Response.status(statusCode).entity("Failed to create work item").build();
                 }
             }
@@ -219,7 +226,7 @@ public class WorkItemResource {
     public Response createTask(@PathParam("type") String type, String jsonPayload) {
         String url = BASE_URL + "$" + type + "?api-version=6.0";
 
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
+        try {
             HttpPost request = new HttpPost(url);
             String authHeader = "Basic " + Base64.getEncoder().encodeToString((":" + PAT).getBytes());
             request.setHeader("Authorization", authHeader);
@@ -230,7 +237,7 @@ public class WorkItemResource {
             request.setEntity(entity);
 
             // Executa a requisição
-            try (CloseableHttpResponse response = client.execute(request)) {
+            try (CloseableHttpResponse response = rateLimiter.execute(request)) {
                 int statusCode = response.getStatusLine().getStatusCode();
                 String responseBody = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
 
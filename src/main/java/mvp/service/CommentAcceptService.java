@@ -5,11 +5,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.json.Json;
-import jakarta.json.JsonArrayBuilder;
 import jakarta.json.JsonObject;
 import mvp.utils.OllamaUtils;
 import mvp.utils.SupabaseUtils;
 import mvp.utils.UtilsService;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,9 +22,18 @@ public class CommentAcceptService {
 
     private static final Logger logger = LoggerFactory.getLogger(CommentAcceptService.class);
 
+    @ConfigProperty(name = "ollama.model", defaultValue = "codellama")
+    String model;
+
     @Inject
     OllamaUtils ollamaUtils;
 
+    @Inject
+    ContextWindowBuilder contextWindowBuilder;
+
+    @Inject
+    TaskPublisher taskPublisher;
+
     public void processComment(String workItemId, String project, String comment, String plataform, String url) {
         try {
             JsonObject finalMessage = SupabaseUtils.hasFinalAssistantMessage(workItemId);
@@ -64,20 +73,13 @@ public class CommentAcceptService {
 
             List<JsonObject> previousMessages = SupabaseUtils.getMessagesByWorkItemId(workItemId);
 
-            // Monta o array de mensagens para o Ollama
-            JsonArrayBuilder messagesArrayBuilder = Json.createArrayBuilder();
-            for (JsonObject message : previousMessages) {
-                messagesArrayBuilder.add(Json.createObjectBuilder()
-                        .add("role", message.getString("sender"))
-                        .add("content", message.getString("message")));
-            }
-
+            // Monta o array de mensagens para o Ollama, limitado ao orçamento de tokens
             JsonObject chatPayloadObject = Json.createObjectBuilder()
-                    .add("model", "codellama")  // Define o modelo como "codellama"
-                    .add("messages", messagesArrayBuilder)
+                    .add("model", model)  // Modelo configurado em ollama.model
+                    .add("messages", contextWindowBuilder.build(workItemId, previousMessages))
                     .build();
 
-            String assistantResponse = ollamaUtils.getChatResponse(chatPayloadObject);
+            String assistantResponse = ollamaUtils.getChatResponse(chatPayloadObject, String.valueOf(companyId));
             if (assistantResponse == null) {
                 return;
             }
@@ -104,7 +106,7 @@ public class CommentAcceptService {
                 CompletableFuture.supplyAsync(() ->
                         generateTaskPayloadsFromJsonToJira(assistantResponse, iterantionPath)
                 ).thenAccept(taskPaloads -> {
-                    taskPaloads.forEach(payloadTask -> UtilsService.addTaskToJira(payloadTask, iterantionPath, url));
+                    taskPublisher.publishToJira(taskPaloads, iterantionPath, url);
             }).exceptionally(ex -> {
                 logger.error("Erro ao processar JSON", ex);
                 return null;
@@ -117,7 +119,7 @@ public class CommentAcceptService {
                     generateTaskPayloadsFromJson(assistantResponse, iterationPath, epicUrl)
             ).thenAccept(taskPayloads -> {
                 logger.info("JSON processado: " + taskPayloads);
-                taskPayloads.forEach(payloadTask -> UtilsService.addTaskToWorkItem("Task", payloadTask));
+                taskPublisher.publishToAzure(taskPayloads, "Task");
             }).exceptionally(ex -> {
                 logger.error("Erro ao processar JSON", ex);
                 return null;
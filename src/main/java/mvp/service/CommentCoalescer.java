@@ -0,0 +1,221 @@
+package mvp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.ShutdownEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Agrupa os pedidos "comment IA" que chegam em sequência na mesma issue.
+ *
+ * Cada pedido custa uma execução do Ollama, mas o texto do comentário não entra no prompt: o
+ * {@link CommentAcceptService} só gera a próxima resposta da interação. O primeiro pedido abre
+ * uma janela para a issue; ela fecha após {@code quiet-period-ms} sem novos pedidos,
+ * {@code max-wait-ms} depois do primeiro ou ao atingir {@code max-comments}, e todos os pedidos
+ * pendentes são atendidos por um único processamento (com o payload do último) na lane da issue.
+ *
+ * "aceito" e comentários sem comando não passam por aqui (ver {@link WebhookProcessingService});
+ * um "aceito" fecha a janela aberta antes de ser agendado. Cada pedido chega com uma vaga já
+ * reservada no {@link WebhookExecutor}, então as janelas abertas ficam limitadas pela capacidade
+ * da fila; as vagas excedentes são devolvidas quando a janela fecha.
+ */
+@ApplicationScoped
+public class CommentCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommentCoalescer.class);
+
+    @ConfigProperty(name = "webhook.coalesce.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "webhook.coalesce.quiet-period-ms", defaultValue = "3000")
+    long quietPeriodMs;
+
+    @ConfigProperty(name = "webhook.coalesce.max-wait-ms", defaultValue = "15000")
+    long maxWaitMs;
+
+    @ConfigProperty(name = "webhook.coalesce.max-comments", defaultValue = "20")
+    int maxComments;
+
+    @Inject
+    WebhookExecutor webhookExecutor;
+
+    @Inject
+    MeterRegistry registry;
+
+    // Comentários aguardando a janela da issue fechar
+    private static final class Pending {
+        final Consumer<String> process;
+        final List<String> payloads = new ArrayList<>();
+        // Tenant da vaga reservada por cada pedido
+        final List<String> tenants = new ArrayList<>();
+        final List<Runnable> callbacks = new ArrayList<>();
+        final long firstAt = System.nanoTime();
+        long lastAt = firstAt;
+        Thread waiter;
+
+        Pending(Consumer<String> process) {
+            this.process = process;
+        }
+    }
+
+    private final Map<String, Pending> pending = new HashMap<>();
+    private boolean closing;
+    private Counter merged;
+
+    @PostConstruct
+    void init() {
+        merged = Counter.builder("webhook.coalesce.merged")
+                .description("Pedidos de resposta atendidos pela execução de outro pedido da mesma issue")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return enabled && quietPeriodMs > 0;
+    }
+
+    /**
+     * Adiciona o comentário à janela da issue {@code lane}, com uma vaga já reservada no executor
+     * para {@code tenant}.
+     * {@code process} recebe o payload combinado e {@code onDone} de cada comentário é chamado ao
+     * final do processamento (com sucesso ou erro).
+     */
+    public void offer(String lane, String tenant, String payload, Runnable onDone, Consumer<String> process) {
+        Pending full;
+        synchronized (pending) {
+            Pending window = pending.get(lane);
+            if (window == null || closing) {
+                window = new Pending(process);
+                window.payloads.add(payload);
+                window.tenants.add(tenant);
+                window.callbacks.add(onDone);
+                if (closing) {
+                    // Desligando: processa direto, sem abrir janela
+                    full = window;
+                } else {
+                    pending.put(lane, window);
+                    Pending opened = window;
+                    window.waiter = Thread.ofVirtual().name("comment-coalescer-" + lane)
+                            .start(() -> await(lane, opened));
+                    return;
+                }
+            } else {
+                window.payloads.add(payload);
+                window.tenants.add(tenant);
+                window.callbacks.add(onDone);
+                window.lastAt = System.nanoTime();
+                merged.increment();
+                if (window.payloads.size() < maxComments) {
+                    return;
+                }
+                pending.remove(lane);
+                full = window;
+            }
+        }
+        flush(lane, full);
+    }
+
+    /**
+     * Fecha agora a janela aberta da issue, se houver, agendando o processamento antes de
+     * qualquer tarefa submetida em seguida na mesma lane.
+     */
+    public void flush(String lane) {
+        Pending window;
+        synchronized (pending) {
+            window = pending.remove(lane);
+        }
+        if (window != null) {
+            flush(lane, window);
+        }
+    }
+
+    // Dorme até a janela fechar (silêncio ou espera máxima); sai se outro caminho já a fechou
+    private void await(String lane, Pending window) {
+        while (true) {
+            long wait;
+            synchronized (pending) {
+                if (pending.get(lane) != window) {
+                    return;
+                }
+                long due = Math.min(window.lastAt + TimeUnit.MILLISECONDS.toNanos(quietPeriodMs),
+                        window.firstAt + TimeUnit.MILLISECONDS.toNanos(maxWaitMs));
+                wait = due - System.nanoTime();
+                if (wait <= 0) {
+                    pending.remove(lane);
+                    break;
+                }
+            }
+            LockSupport.parkNanos(wait);
+        }
+        flush(lane, window);
+    }
+
+    // Chamado por quem removeu a janela do mapa, portanto sem concorrência nas listas
+    private void flush(String lane, Pending window) {
+        String payload = merge(window.payloads);
+        int comments = window.payloads.size();
+        if (comments > 1) {
+            for (String tenant : window.tenants.subList(0, comments - 1)) {
+                webhookExecutor.cancel(tenant, 1);
+            }
+            logger.info("{} pedidos de resposta da issue {} atendidos por uma única execução", comments, lane);
+        }
+        try {
+            webhookExecutor.submitReserved(lane, window.tenants.get(comments - 1), () -> {
+                try {
+                    window.process.accept(payload);
+                } finally {
+                    window.callbacks.forEach(Runnable::run);
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.error("Falha ao agendar os comentários da issue " + lane + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Payload do último pedido: todos pedem a mesma coisa, a próxima resposta da interação.
+     */
+    static String merge(List<String> payloads) {
+        return payloads.get(payloads.size() - 1);
+    }
+
+    /**
+     * Fecha as janelas abertas no início do desligamento, enquanto o executor ainda aceita tarefas
+     * (o {@code @PreDestroy} dele roda depois) e antes de o journal aguardar os registros pendentes.
+     */
+    void onStop(@Observes @Priority(1000) ShutdownEvent event) {
+        List<Map.Entry<String, Pending>> open;
+        synchronized (pending) {
+            closing = true;
+            open = new ArrayList<>(pending.entrySet());
+            pending.clear();
+        }
+        for (Map.Entry<String, Pending> window : open) {
+            LockSupport.unpark(window.getValue().waiter);
+            flush(window.getKey(), window.getValue());
+        }
+        for (Map.Entry<String, Pending> window : open) {
+            try {
+                window.getValue().waiter.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
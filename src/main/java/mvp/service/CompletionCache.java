@@ -0,0 +1,326 @@
+package mvp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Cache das respostas do Ollama endereçado pelo conteúdo da requisição.
+ *
+ * A chave é o SHA-256 do modelo, das opções e das mensagens normalizadas, então webhooks
+ * duplicados ou reprocessados que geram a mesma conversa reaproveitam a resposta anterior.
+ * Requisições idênticas simultâneas aguardam a mesma chamada ao Ollama.
+ * Opcionalmente as respostas também são gravadas em disco e sobrevivem a um restart.
+ */
+@ApplicationScoped
+public class CompletionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompletionCache.class);
+
+    @ConfigProperty(name = "completion-cache.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "completion-cache.max-entries", defaultValue = "1000")
+    int maxEntries;
+
+    @ConfigProperty(name = "completion-cache.ttl-hours", defaultValue = "24")
+    long ttlHours;
+
+    // Diretório para persistir as respostas; sem valor o cache fica só em memória
+    @ConfigProperty(name = "completion-cache.dir")
+    Optional<String> dir;
+
+    @Inject
+    MeterRegistry registry;
+
+    // response nulo: gravada em disco por uma execução anterior e ainda não lida
+    private record Entry(String response, Instant createdAt) {
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private Path directory;
+    private Duration ttl;
+    private Counter hits;
+    private Counter misses;
+
+    @PostConstruct
+    void init() {
+        ttl = Duration.ofHours(ttlHours);
+        if (dir.isPresent()) {
+            directory = Path.of(dir.get());
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                logger.warn("Cache de respostas sem persistência, falha ao criar " + directory + ": " + e.getMessage());
+                directory = null;
+            }
+        }
+        if (directory != null) {
+            index();
+        }
+
+        hits = Counter.builder("ollama.completion.cache.hits")
+                .description("Respostas do Ollama servidas pelo cache")
+                .register(registry);
+        misses = Counter.builder("ollama.completion.cache.misses")
+                .description("Requisições ao Ollama sem resposta em cache")
+                .register(registry);
+        Gauge.builder("ollama.completion.cache.size", this, cache -> cache.size())
+                .description("Respostas mantidas em memória")
+                .register(registry);
+    }
+
+    /**
+     * Retorna a resposta em cache para o payload do /api/chat ou executa {@code compute}.
+     * Respostas nulas (falha no Ollama) não são armazenadas.
+     */
+    public String getOrCompute(JsonObject chatPayload, Supplier<String> compute) {
+        if (!enabled) {
+            return compute.get();
+        }
+
+        String key = key(chatPayload);
+        String cached = get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            // Requisição idêntica em andamento: aguarda o mesmo resultado
+            hits.increment();
+            return running.join();
+        }
+
+        misses.increment();
+        try {
+            String response = compute.get();
+            if (response != null) {
+                put(key, response);
+            }
+            mine.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private String get(String key) {
+        Entry entry;
+        boolean stale = false;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && expired(entry)) {
+                entries.remove(key);
+                entry = null;
+                stale = true;
+            }
+        }
+        if (stale) {
+            delete(List.of(key));
+            return null;
+        }
+        if (entry != null && entry.response() != null) {
+            return entry.response();
+        }
+
+        // Só no disco (indexada na subida) ou ainda não vista nesta execução
+        Entry stored = read(key);
+        List<String> evicted;
+        synchronized (this) {
+            if (stored == null) {
+                entries.remove(key);
+                return null;
+            }
+            entries.put(key, stored);
+            evicted = evict();
+        }
+        delete(evicted);
+        return stored.response();
+    }
+
+    private void put(String key, String response) {
+        Entry entry = new Entry(response, Instant.now());
+        List<String> evicted;
+        synchronized (this) {
+            entries.put(key, entry);
+            evicted = evict();
+        }
+        delete(evicted);
+        write(key, response);
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    // Deve ser chamado com o lock; os arquivos das chaves devolvidas são removidos fora dele
+    private List<String> evict() {
+        List<String> evicted = new ArrayList<>();
+        var it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            evicted.add(it.next().getKey());
+            it.remove();
+        }
+        return evicted;
+    }
+
+    // Remove do disco as respostas que saíram do cache, mantendo o diretório limitado
+    private void delete(List<String> keys) {
+        if (directory == null) {
+            return;
+        }
+        for (String key : keys) {
+            try {
+                Files.deleteIfExists(directory.resolve(key));
+            } catch (IOException e) {
+                logger.warn("Falha ao remover resposta do cache em disco: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Indexa as respostas gravadas por execuções anteriores, da mais antiga para a mais recente,
+     * sem carregar o conteúdo: expiradas e excedentes são removidas, as demais entram no LRU e
+     * são lidas do disco no primeiro acesso.
+     */
+    private void index() {
+        List<String> stale = new ArrayList<>();
+        List<Map.Entry<String, Instant>> stored = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                Instant modified = Files.getLastModifiedTime(file).toInstant();
+                if (name.endsWith(".tmp") || modified.plus(ttl).isBefore(Instant.now())) {
+                    stale.add(name);
+                } else {
+                    stored.add(Map.entry(name, modified));
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Falha ao indexar o cache de respostas em " + directory + ": " + e.getMessage());
+            return;
+        }
+
+        stored.sort(Map.Entry.comparingByValue());
+        synchronized (this) {
+            stored.forEach(file -> entries.put(file.getKey(), new Entry(null, file.getValue())));
+            stale.addAll(evict());
+        }
+        delete(stale);
+        logger.info("Cache de respostas: {} respostas indexadas em {}", size(), directory);
+    }
+
+    private boolean expired(Entry entry) {
+        return entry.createdAt().plus(ttl).isBefore(Instant.now());
+    }
+
+    private Entry read(String key) {
+        if (directory == null) {
+            return null;
+        }
+        Path file = directory.resolve(key);
+        try {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            Entry entry = new Entry(Files.readString(file, StandardCharsets.UTF_8),
+                    Files.getLastModifiedTime(file).toInstant());
+            if (expired(entry)) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            return entry;
+        } catch (IOException e) {
+            logger.warn("Falha ao ler resposta do cache em disco: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void write(String key, String response) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Path tmp = directory.resolve(key + ".tmp");
+            Files.writeString(tmp, response, StandardCharsets.UTF_8);
+            Files.move(tmp, directory.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Falha ao gravar resposta do cache em disco: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Chave do payload: modelo e demais opções em ordem alfabética, seguidos das mensagens
+     * com papel em minúsculas e conteúdo normalizado (quebras de linha e espaços nas pontas).
+     */
+    static String key(JsonObject chatPayload) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        for (Map.Entry<String, JsonValue> option : new TreeMap<>(chatPayload).entrySet()) {
+            if (option.getKey().equals("messages") || option.getKey().equals("stream")) {
+                continue;
+            }
+            update(digest, option.getKey());
+            update(digest, option.getValue().toString());
+        }
+
+        for (JsonValue value : chatPayload.getJsonArray("messages")) {
+            JsonObject message = value.asJsonObject();
+            update(digest, message.getString("role", "").trim().toLowerCase());
+            update(digest, normalize(message.getString("content", "")));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String normalize(String content) {
+        return content.replace("\r\n", "\n").replaceAll("[ \\t]+\n", "\n").trim();
+    }
+
+    // Separador nulo evita colisões entre campos concatenados
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
@@ -0,0 +1,160 @@
+package mvp.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import mvp.utils.OllamaUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Monta o array "messages" enviado ao Ollama a partir do histórico do work item,
+ * respeitando um orçamento de tokens.
+ *
+ * A primeira mensagem (prompt do fluxo com a descrição do item) é sempre mantida, seguida das
+ * mensagens mais recentes que couberem em {@code max-tokens}. Com o resumo habilitado, as
+ * mensagens intermediárias descartadas são substituídas por um resumo gerado pelo Ollama,
+ * guardado por work item e atualizado apenas com as mensagens que saíram da janela desde então.
+ */
+@ApplicationScoped
+public class ContextWindowBuilder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContextWindowBuilder.class);
+
+    @ConfigProperty(name = "ollama.model", defaultValue = "codellama")
+    String model;
+
+    @ConfigProperty(name = "context-window.max-tokens", defaultValue = "3072")
+    int maxTokens;
+
+    @ConfigProperty(name = "context-window.summary.enabled", defaultValue = "false")
+    boolean summaryEnabled;
+
+    @ConfigProperty(name = "context-window.summary.max-tokens", defaultValue = "512")
+    int summaryMaxTokens;
+
+    @ConfigProperty(name = "context-window.summary.max-work-items", defaultValue = "500")
+    int summaryMaxWorkItems;
+
+    @Inject
+    TokenCounter tokenCounter;
+
+    @Inject
+    OllamaUtils ollamaUtils;
+
+    // Resumo das mensagens até o id coveredUpTo (inclusive), sem a primeira mensagem
+    private record Summary(long coveredUpTo, String text) {
+    }
+
+    private final LinkedHashMap<String, Summary> summaries = new LinkedHashMap<>(64, 0.75f, true);
+
+    /**
+     * Mensagens no formato do /api/chat ({"role", "content"}) a partir das linhas da tabela
+     * 'messages' ordenadas por id.
+     */
+    public JsonArray build(String workItemId, List<JsonObject> rows) {
+        JsonArrayBuilder messages = Json.createArrayBuilder();
+        if (rows.isEmpty()) {
+            return messages.build();
+        }
+
+        JsonObject first = rows.get(0);
+        int budget = maxTokens - tokenCounter.count(first) - (summaryEnabled ? summaryMaxTokens : 0);
+
+        // Do fim para o início, enquanto couber; a última mensagem sempre entra
+        int start = rows.size();
+        int used = 0;
+        for (int i = rows.size() - 1; i >= 1; i--) {
+            int tokens = tokenCounter.count(rows.get(i));
+            if (i < rows.size() - 1 && used + tokens > budget) {
+                break;
+            }
+            used += tokens;
+            start = i;
+        }
+
+        messages.add(message(first.getString("sender"), first.getString("message")));
+
+        List<JsonObject> dropped = rows.subList(1, start);
+        if (!dropped.isEmpty()) {
+            logger.info("Work item {}: {} de {} mensagens fora da janela de contexto", workItemId, dropped.size(), rows.size());
+            String summary = summaryEnabled ? summarize(workItemId, dropped) : null;
+            if (summary != null) {
+                messages.add(message("system", "Resumo da conversa anterior: " + summary));
+            }
+        }
+
+        for (JsonObject row : rows.subList(start, rows.size())) {
+            messages.add(message(row.getString("sender"), row.getString("message")));
+        }
+        return messages.build();
+    }
+
+    private String summarize(String workItemId, List<JsonObject> dropped) {
+        long droppedUpTo = id(dropped.get(dropped.size() - 1));
+        Summary previous;
+        synchronized (summaries) {
+            previous = summaries.get(workItemId);
+        }
+        if (previous != null && previous.coveredUpTo() == droppedUpTo) {
+            return previous.text();
+        }
+
+        // Resumo incremental: resumo anterior + mensagens que saíram da janela desde então
+        boolean incremental = previous != null && previous.coveredUpTo() < droppedUpTo;
+        StringBuilder transcript = new StringBuilder();
+        if (incremental) {
+            transcript.append("Resumo até aqui: ").append(previous.text()).append("\n\n");
+        }
+        for (JsonObject row : dropped) {
+            if (!incremental || id(row) > previous.coveredUpTo()) {
+                transcript.append(row.getString("sender")).append(": ").append(row.getString("message")).append("\n\n");
+            }
+        }
+
+        JsonObject chatPayload = Json.createObjectBuilder()
+                .add("model", model)
+                .add("messages", Json.createArrayBuilder().add(message("user",
+                        "Resuma de forma concisa a conversa abaixo, preservando requisitos, decisões e as sugestões "
+                                + "aceitas ou recusadas. Responda apenas com o resumo, em até "
+                                + (summaryMaxTokens * 3 / 4) + " palavras.\n\n" + transcript)))
+                .build();
+
+        String text = ollamaUtils.getChatResponse(chatPayload);
+        if (text == null) {
+            logger.warn("Work item {}: falha ao gerar o resumo do contexto, seguindo sem ele", workItemId);
+            return incremental ? previous.text() : null;
+        }
+        if (tokenCounter.count(text) > summaryMaxTokens) {
+            text = text.substring(0, Math.min(text.length(), summaryMaxTokens * 4));
+        }
+
+        synchronized (summaries) {
+            summaries.put(workItemId, new Summary(droppedUpTo, text));
+            var it = summaries.entrySet().iterator();
+            while (summaries.size() > summaryMaxWorkItems && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        return text;
+    }
+
+    private static long id(JsonObject row) {
+        return row.getJsonNumber("id").longValue();
+    }
+
+    private static JsonObject message(String role, String content) {
+        return Json.createObjectBuilder()
+                .add("role", role)
+                .add("content", content)
+                .build();
+    }
+}
@@ -0,0 +1,151 @@
+package mvp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Histórico da tabela 'messages' por id_workitem mantido em memória.
+ *
+ * As mensagens gravadas por este serviço são anexadas diretamente ao histórico, e do Supabase
+ * só é baixado o que ainda não foi visto ({@code id=gt.<último id baixado>}): o histórico
+ * completo é lido apenas na primeira vez e a consulta incremental é feita quando o histórico
+ * tem mais de {@code refresh-seconds} ou quando uma gravação não retornou a linha criada.
+ */
+@ApplicationScoped
+public class ConversationCache {
+
+    @ConfigProperty(name = "conversation-cache.max-work-items", defaultValue = "500")
+    int maxWorkItems;
+
+    @ConfigProperty(name = "conversation-cache.refresh-seconds", defaultValue = "60")
+    long refreshSeconds;
+
+    @Inject
+    SupabaseService supabaseService;
+
+    @Inject
+    MeterRegistry registry;
+
+    private static final class Conversation {
+        // Mensagens ordenadas por id; a chave evita duplicar o que foi anexado e depois baixado
+        final TreeMap<Long, JsonObject> messages = new TreeMap<>();
+        // Maior id obtido por consulta ao Supabase (linhas anexadas localmente não contam)
+        long fetchedUpTo = -1;
+        long refreshedAt;
+        boolean stale = true;
+    }
+
+    private final LinkedHashMap<String, Conversation> conversations = new LinkedHashMap<>(64, 0.75f, true);
+
+    private Counter fullLoads;
+    private Counter deltaLoads;
+    private Counter hits;
+
+    @PostConstruct
+    void init() {
+        fullLoads = Counter.builder("conversation.cache.loads").tag("type", "full")
+                .description("Históricos de work item baixados do Supabase")
+                .register(registry);
+        deltaLoads = Counter.builder("conversation.cache.loads").tag("type", "delta")
+                .description("Históricos de work item baixados do Supabase")
+                .register(registry);
+        hits = Counter.builder("conversation.cache.hits")
+                .description("Históricos de work item servidos sem consulta ao Supabase")
+                .register(registry);
+        Gauge.builder("conversation.cache.size", this, cache -> cache.size())
+                .description("Work items com histórico em memória")
+                .register(registry);
+    }
+
+    /**
+     * Mensagens do work item ordenadas por id, no mesmo formato de
+     * {@link SupabaseService#getMessagesByWorkItemId(String)}.
+     */
+    public List<JsonObject> getMessages(String workItemId) {
+        Conversation conversation = conversation(workItemId);
+        synchronized (conversation) {
+            boolean expired = System.nanoTime() - conversation.refreshedAt > TimeUnit.SECONDS.toNanos(refreshSeconds);
+            if (conversation.stale || expired) {
+                refresh(workItemId, conversation);
+            } else {
+                hits.increment();
+            }
+            return new ArrayList<>(conversation.messages.values());
+        }
+    }
+
+    /**
+     * Anexa uma mensagem recém-gravada. Sem a linha gravada (null ou sem id) o histórico
+     * é marcado para consulta incremental no próximo acesso.
+     */
+    public void append(String workItemId, JsonObject row) {
+        Conversation conversation;
+        synchronized (this) {
+            conversation = conversations.get(workItemId);
+        }
+        if (conversation == null) {
+            // Nada em memória: o próximo acesso fará a carga completa
+            return;
+        }
+        synchronized (conversation) {
+            if (row == null || row.get("id") == null || row.get("id").getValueType() != JsonValue.ValueType.NUMBER) {
+                conversation.stale = true;
+                return;
+            }
+            conversation.messages.put(row.getJsonNumber("id").longValue(), row);
+        }
+    }
+
+    private void refresh(String workItemId, Conversation conversation) {
+        List<JsonObject> rows;
+        if (conversation.fetchedUpTo < 0) {
+            rows = supabaseService.getMessagesByWorkItemId(workItemId);
+            fullLoads.increment();
+        } else {
+            rows = supabaseService.getMessagesByWorkItemIdAfter(workItemId, conversation.fetchedUpTo);
+            deltaLoads.increment();
+        }
+
+        for (JsonObject row : rows) {
+            long id = row.getJsonNumber("id").longValue();
+            conversation.messages.put(id, row);
+            conversation.fetchedUpTo = Math.max(conversation.fetchedUpTo, id);
+        }
+        if (conversation.fetchedUpTo < 0) {
+            // Work item ainda sem mensagens: as próximas consultas já podem ser incrementais
+            conversation.fetchedUpTo = 0;
+        }
+        conversation.refreshedAt = System.nanoTime();
+        conversation.stale = false;
+    }
+
+    private synchronized Conversation conversation(String workItemId) {
+        Conversation conversation = conversations.computeIfAbsent(workItemId, id -> new Conversation());
+        var it = conversations.entrySet().iterator();
+        while (conversations.size() > maxWorkItems && it.hasNext()) {
+            Map.Entry<String, Conversation> eldest = it.next();
+            if (eldest.getValue() != conversation) {
+                it.remove();
+            }
+        }
+        return conversation;
+    }
+
+    private synchronized int size() {
+        return conversations.size();
+    }
+}
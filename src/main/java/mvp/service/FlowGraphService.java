@@ -0,0 +1,131 @@
+package mvp.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Grafo do fluxo de interações (tabela message_processing) mantido em memória.
+ *
+ * A tabela é pequena e raramente alterada, então é carregada inteira uma única vez e
+ * substituída atomicamente quando o MessageProcessingResource cria, altera ou remove uma etapa.
+ * Assim a resolução da próxima etapa deixa de ser uma chamada HTTP ao Supabase.
+ */
+@ApplicationScoped
+public class FlowGraphService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlowGraphService.class);
+
+    @Inject
+    SupabaseService supabaseService;
+
+    private final AtomicReference<FlowGraph> graph = new AtomicReference<>();
+
+    /**
+     * Etapa {@code order + 1} da interação informada, ou null se não existir.
+     * Mesmo formato de {@link SupabaseService#getNextInteractionOrder(int, int)}.
+     */
+    public JsonObject getNextInteractionOrder(int interaction, int order) {
+        return current().steps().get(key(interaction, order + 1));
+    }
+
+    /**
+     * Primeira etapa da interação seguinte, ou null se não existir.
+     * Mesmo formato de {@link SupabaseService#getNextInteraction(int)}.
+     */
+    public JsonObject getNextInteraction(int interaction) {
+        return current().firstSteps().get(interaction + 1);
+    }
+
+    /**
+     * Recarrega o fluxo a partir do Supabase. Em caso de erro o grafo atual é descartado
+     * e será carregado novamente no próximo uso.
+     */
+    public void reload() {
+        try {
+            graph.set(load());
+        } catch (Exception e) {
+            logger.warn("Falha ao recarregar o fluxo de interações: " + e.getMessage());
+            graph.set(null);
+        }
+    }
+
+    private FlowGraph current() {
+        FlowGraph current = graph.get();
+        if (current == null) {
+            synchronized (this) {
+                current = graph.get();
+                if (current == null) {
+                    current = load();
+                    graph.set(current);
+                }
+            }
+        }
+        return current;
+    }
+
+    private FlowGraph load() {
+        List<JsonObject> rows = supabaseService.getAllMessageProcessing().stream()
+                .sorted(Comparator.comparingLong(row -> row.getJsonNumber("id").longValue()))
+                .toList();
+
+        Map<Long, JsonObject> steps = new HashMap<>();
+        Map<Integer, JsonObject> firstSteps = new HashMap<>();
+        Map<Integer, Integer> firstOrders = new HashMap<>();
+
+        for (JsonObject row : rows) {
+            if (!hasType(row, "prompt", JsonValue.ValueType.STRING)
+                    || !hasType(row, "interaction", JsonValue.ValueType.NUMBER)
+                    || !hasType(row, "interaction_order", JsonValue.ValueType.NUMBER)) {
+                logger.warn("Etapa do fluxo ignorada por estar incompleta: " + row);
+                continue;
+            }
+
+            int interaction = row.getInt("interaction");
+            int order = row.getInt("interaction_order");
+
+            // Em caso de duplicidade prevalece a primeira linha (menor id)
+            steps.putIfAbsent(key(interaction, order), Json.createObjectBuilder()
+                    .add("prompt", row.getString("prompt"))
+                    .add("interaction", interaction)
+                    .add("interaction_order", order)
+                    .build());
+
+            Integer firstOrder = firstOrders.get(interaction);
+            if (firstOrder == null || order < firstOrder) {
+                firstOrders.put(interaction, order);
+                firstSteps.put(interaction, Json.createObjectBuilder()
+                        .add("prompt", row.getString("prompt"))
+                        .add("interaction", interaction)
+                        .add("interaction_order", order)
+                        .add("is_final", row.getBoolean("is_final", false))
+                        .build());
+            }
+        }
+
+        logger.info("Fluxo de interações carregado: {} etapas em {} interações", steps.size(), firstSteps.size());
+        return new FlowGraph(Map.copyOf(steps), Map.copyOf(firstSteps));
+    }
+
+    private static boolean hasType(JsonObject row, String field, JsonValue.ValueType type) {
+        JsonValue value = row.get(field);
+        return value != null && value.getValueType() == type;
+    }
+
+    private static long key(int interaction, int order) {
+        return ((long) interaction << 32) | (order & 0xFFFFFFFFL);
+    }
+
+    private record FlowGraph(Map<Long, JsonObject> steps, Map<Integer, JsonObject> firstSteps) {
+    }
+}
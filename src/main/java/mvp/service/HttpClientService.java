@@ -0,0 +1,120 @@
+package mvp.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cliente HTTP compartilhado, com pool de conexões por host (keep-alive).
+ * Evita um novo handshake TCP + TLS a cada chamada ao Jira, Azure DevOps e Ollama.
+ */
+@ApplicationScoped
+public class HttpClientService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientService.class);
+
+    @ConfigProperty(name = "http.client.max-total", defaultValue = "100")
+    int maxTotal;
+
+    @ConfigProperty(name = "http.client.max-per-route", defaultValue = "20")
+    int maxPerRoute;
+
+    @ConfigProperty(name = "http.client.connect-timeout-ms", defaultValue = "5000")
+    int connectTimeoutMs;
+
+    @ConfigProperty(name = "http.client.connection-request-timeout-ms", defaultValue = "10000")
+    int connectionRequestTimeoutMs;
+
+    // Respostas do Ollama podem levar minutos; padrão de 5 minutos sem dados antes de desistir da leitura
+    @ConfigProperty(name = "http.client.socket-timeout-ms", defaultValue = "300000")
+    int socketTimeoutMs;
+
+    @ConfigProperty(name = "http.client.keep-alive-seconds", defaultValue = "60")
+    long keepAliveSeconds;
+
+    @ConfigProperty(name = "http.client.idle-evict-seconds", defaultValue = "30")
+    long idleEvictSeconds;
+
+    @ConfigProperty(name = "http.client.validate-after-inactivity-ms", defaultValue = "2000")
+    int validateAfterInactivityMs;
+
+    @Inject
+    MeterRegistry registry;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient client;
+
+    @PostConstruct
+    void init() {
+        connectionManager = new PoolingHttpClientConnectionManager(keepAliveSeconds * 2, TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        connectionManager.setValidateAfterInactivity(validateAfterInactivityMs);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMs)
+                .setConnectionRequestTimeout(connectionRequestTimeoutMs)
+                .setSocketTimeout(socketTimeoutMs)
+                .build();
+
+        // Respeita o Keep-Alive do servidor, limitado ao máximo configurado
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            long max = TimeUnit.SECONDS.toMillis(keepAliveSeconds);
+            return serverKeepAlive > 0 ? Math.min(serverKeepAlive, max) : max;
+        };
+
+        client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .evictExpiredConnections()
+                .evictIdleConnections(idleEvictSeconds, TimeUnit.SECONDS)
+                .build();
+
+        Gauge.builder("http.client.pool.leased", connectionManager, cm -> cm.getTotalStats().getLeased())
+                .description("Conexões em uso no pool HTTP")
+                .register(registry);
+        Gauge.builder("http.client.pool.available", connectionManager, cm -> cm.getTotalStats().getAvailable())
+                .description("Conexões ociosas disponíveis no pool HTTP")
+                .register(registry);
+        Gauge.builder("http.client.pool.pending", connectionManager, cm -> cm.getTotalStats().getPending())
+                .description("Requisições aguardando uma conexão do pool HTTP")
+                .register(registry);
+        Gauge.builder("http.client.pool.max", connectionManager, cm -> cm.getTotalStats().getMax())
+                .description("Tamanho máximo do pool HTTP")
+                .register(registry);
+    }
+
+    /**
+     * Retorna o cliente compartilhado. Não deve ser fechado por quem o utiliza;
+     * feche apenas a resposta (CloseableHttpResponse) para devolver a conexão ao pool.
+     */
+    public CloseableHttpClient getClient() {
+        return client;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        try {
+            client.close();
+        } catch (IOException e) {
+            logger.warn("Erro ao fechar o pool HTTP: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package mvp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.JsonObject;
+import mvp.utils.RingBuffer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Envio assíncrono e em lote dos registros de log para a tabela 'logs' do Supabase.
+ *
+ * {@link SupabaseService#saveLog} apenas enfileira o registro em um buffer circular limitado;
+ * uma thread de fundo o esvazia e grava os registros em lote (um único POST com um array),
+ * quando o lote enche ou a cada {@code flush-interval-ms}.
+ */
+@ApplicationScoped
+public class LogShipper {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogShipper.class);
+
+    public enum FullPolicy { DROP, BLOCK }
+
+    @ConfigProperty(name = "log-shipper.capacity", defaultValue = "8192")
+    int capacity;
+
+    @ConfigProperty(name = "log-shipper.batch-size", defaultValue = "200")
+    int batchSize;
+
+    @ConfigProperty(name = "log-shipper.flush-interval-ms", defaultValue = "1000")
+    long flushIntervalMs;
+
+    // drop: descarta o registro se o buffer estiver cheio; block: aguarda até block-timeout-ms
+    @ConfigProperty(name = "log-shipper.full-policy", defaultValue = "drop")
+    FullPolicy fullPolicy;
+
+    @ConfigProperty(name = "log-shipper.block-timeout-ms", defaultValue = "100")
+    long blockTimeoutMs;
+
+    @Inject
+    SupabaseService supabaseService;
+
+    @Inject
+    MeterRegistry registry;
+
+    private RingBuffer<JsonObject> buffer;
+    private Counter dropped;
+    private Counter shipped;
+    private Counter failed;
+    private volatile boolean running;
+    private Thread flusher;
+
+    @PostConstruct
+    void init() {
+        buffer = new RingBuffer<>(capacity);
+        dropped = Counter.builder("log.shipper.dropped")
+                .description("Logs descartados por buffer cheio")
+                .register(registry);
+        shipped = Counter.builder("log.shipper.shipped")
+                .description("Logs gravados no Supabase")
+                .register(registry);
+        failed = Counter.builder("log.shipper.failed")
+                .description("Logs perdidos por falha no envio ao Supabase")
+                .register(registry);
+        Gauge.builder("log.shipper.pending", buffer, RingBuffer::size)
+                .description("Logs aguardando envio")
+                .register(registry);
+
+        running = true;
+        flusher = Thread.ofVirtual().name("log-shipper").start(this::run);
+    }
+
+    /**
+     * Enfileira o registro sem bloquear (ou bloqueando por pouco tempo, conforme a política).
+     */
+    public void offer(JsonObject entry) {
+        if (!buffer.offer(entry)) {
+            if (fullPolicy == FullPolicy.BLOCK && offerBlocking(entry)) {
+                return;
+            }
+            dropped.increment();
+            return;
+        }
+        if (buffer.size() >= batchSize) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    private boolean offerBlocking(JsonObject entry) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+        LockSupport.unpark(flusher);
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            if (buffer.offer(entry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void run() {
+        while (running) {
+            if (buffer.size() < batchSize) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMs));
+            }
+            flush();
+        }
+        // Esvazia o que restou ao encerrar
+        while (buffer.size() > 0) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        List<JsonObject> batch = new ArrayList<>(Math.min(batchSize, buffer.size()));
+        JsonObject entry;
+        while (batch.size() < batchSize && (entry = buffer.poll()) != null) {
+            batch.add(entry);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            if (supabaseService.saveLogs(batch)) {
+                shipped.increment(batch.size());
+            } else {
+                failed.increment(batch.size());
+            }
+        } catch (Exception e) {
+            failed.increment(batch.size());
+            logger.error("Exceção ao enviar lote de logs ao Supabase: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
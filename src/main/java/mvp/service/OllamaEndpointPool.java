@@ -0,0 +1,275 @@
+package mvp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool de instâncias do Ollama ({@code ollama.endpoints}).
+ *
+ * Cada chamada vai para a instância saudável com menos requisições em andamento que tenha o
+ * modelo instalado. Uma thread de fundo consulta {@code /api/tags} de cada instância para saber
+ * se está no ar e quais modelos possui. Instâncias com falhas seguidas ou com latência média muito
+ * acima das demais ficam fora do pool por {@code ejection-seconds}.
+ */
+@ApplicationScoped
+public class OllamaEndpointPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(OllamaEndpointPool.class);
+
+    // Peso da última amostra na latência média (EWMA)
+    private static final double EWMA_ALPHA = 0.2;
+
+    @ConfigProperty(name = "ollama.endpoints", defaultValue = "http://127.0.0.1:11434")
+    List<String> urls;
+
+    @ConfigProperty(name = "ollama.pool.probe-interval-seconds", defaultValue = "15")
+    long probeIntervalSeconds;
+
+    @ConfigProperty(name = "ollama.pool.probe-timeout-ms", defaultValue = "3000")
+    int probeTimeoutMs;
+
+    @ConfigProperty(name = "ollama.pool.ejection-seconds", defaultValue = "60")
+    long ejectionSeconds;
+
+    @ConfigProperty(name = "ollama.pool.max-consecutive-failures", defaultValue = "3")
+    int maxConsecutiveFailures;
+
+    // Instância lenta: latência média acima de slow-factor vezes a mediana das demais
+    @ConfigProperty(name = "ollama.pool.slow-factor", defaultValue = "3.0")
+    double slowFactor;
+
+    @ConfigProperty(name = "ollama.pool.slow-min-samples", defaultValue = "5")
+    int slowMinSamples;
+
+    @Inject
+    HttpClientService httpClientService;
+
+    @Inject
+    MeterRegistry registry;
+
+    /**
+     * Instância do Ollama. Obtida por {@link #acquire(String)} e devolvida por {@link #release}.
+     */
+    public static final class Endpoint {
+        private final String url;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private volatile boolean reachable = true;
+        // null enquanto a primeira consulta ao /api/tags não responder
+        private volatile Set<String> models;
+        // Comparado com System.nanoTime(), que pode ser negativo: nunca parte de zero
+        private volatile long ejectedUntil = System.nanoTime();
+        private double latencyMs;
+        private int samples;
+        private int consecutiveFailures;
+
+        private Endpoint(String url) {
+            this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        }
+
+        public String url() {
+            return url;
+        }
+
+        boolean available(long now) {
+            return reachable && now - ejectedUntil >= 0;
+        }
+
+        boolean hasModel(String model) {
+            Set<String> known = models;
+            return known == null || model == null || known.contains(normalizeModel(model));
+        }
+    }
+
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private volatile boolean running;
+    private Thread prober;
+
+    @PostConstruct
+    void init() {
+        for (String url : urls) {
+            Endpoint endpoint = new Endpoint(url.trim());
+            endpoints.add(endpoint);
+            Gauge.builder("ollama.endpoint.outstanding", endpoint.outstanding, AtomicInteger::get)
+                    .description("Requisições em andamento na instância do Ollama")
+                    .tag("endpoint", endpoint.url)
+                    .register(registry);
+            Gauge.builder("ollama.endpoint.available", endpoint, e -> e.available(System.nanoTime()) ? 1 : 0)
+                    .description("Instância do Ollama disponível para receber requisições")
+                    .tag("endpoint", endpoint.url)
+                    .register(registry);
+        }
+
+        running = true;
+        prober = Thread.ofVirtual().name("ollama-prober").start(this::probeLoop);
+    }
+
+    /**
+     * Todas as instâncias configuradas, disponíveis ou não.
+     */
+    public List<Endpoint> endpoints() {
+        return List.copyOf(endpoints);
+    }
+
+    /**
+     * Escolhe a instância disponível com menos requisições em andamento que tenha o modelo.
+     * Se nenhuma atender, usa a menos ocupada entre todas em vez de falhar.
+     */
+    public Endpoint acquire(String model) {
+        long now = System.nanoTime();
+        List<Endpoint> candidates = endpoints.stream()
+                .filter(endpoint -> endpoint.available(now) && endpoint.hasModel(model))
+                .toList();
+        if (candidates.isEmpty()) {
+            logger.warn("Nenhuma instância do Ollama disponível com o modelo " + model + "; usando a menos ocupada");
+            candidates = endpoints;
+        }
+
+        // Menor número de requisições em andamento; empate resolvido aleatoriamente
+        int offset = ThreadLocalRandom.current().nextInt(candidates.size());
+        Endpoint chosen = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            Endpoint endpoint = candidates.get((offset + i) % candidates.size());
+            if (chosen == null || endpoint.outstanding.get() < chosen.outstanding.get()) {
+                chosen = endpoint;
+            }
+        }
+        chosen.outstanding.incrementAndGet();
+        return chosen;
+    }
+
+    /**
+     * Devolve a instância, registrando a duração da chamada e se ela falhou.
+     */
+    public void release(Endpoint endpoint, long elapsedNanos, boolean success) {
+        endpoint.outstanding.decrementAndGet();
+        synchronized (endpoint) {
+            if (!success) {
+                if (++endpoint.consecutiveFailures >= maxConsecutiveFailures) {
+                    eject(endpoint, endpoint.consecutiveFailures + " falhas seguidas");
+                }
+                return;
+            }
+            endpoint.consecutiveFailures = 0;
+            double ms = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            endpoint.latencyMs = endpoint.samples == 0 ? ms : EWMA_ALPHA * ms + (1 - EWMA_ALPHA) * endpoint.latencyMs;
+            endpoint.samples++;
+        }
+        checkSlow(endpoint);
+    }
+
+    private void checkSlow(Endpoint endpoint) {
+        long now = System.nanoTime();
+        List<Double> peers = new ArrayList<>();
+        for (Endpoint other : endpoints) {
+            if (other != endpoint && other.available(now)) {
+                synchronized (other) {
+                    if (other.samples >= slowMinSamples) {
+                        peers.add(other.latencyMs);
+                    }
+                }
+            }
+        }
+        // Só expulsa se houver outra instância para assumir a carga
+        if (peers.isEmpty()) {
+            return;
+        }
+        peers.sort(Comparator.naturalOrder());
+        double median = peers.get(peers.size() / 2);
+
+        synchronized (endpoint) {
+            if (endpoint.samples >= slowMinSamples && endpoint.latencyMs > slowFactor * median) {
+                eject(endpoint, String.format("latência média %.0f ms (mediana das demais %.0f ms)", endpoint.latencyMs, median));
+            }
+        }
+    }
+
+    // Deve ser chamado com o lock da instância
+    private void eject(Endpoint endpoint, String reason) {
+        endpoint.ejectedUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(ejectionSeconds);
+        endpoint.consecutiveFailures = 0;
+        endpoint.samples = 0;
+        logger.warn("Instância do Ollama " + endpoint.url + " fora do pool por " + ejectionSeconds + "s: " + reason);
+    }
+
+    private void probeLoop() {
+        while (running) {
+            endpoints.forEach(this::probe);
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(probeIntervalSeconds));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void probe(Endpoint endpoint) {
+        HttpGet request = new HttpGet(endpoint.url + "/api/tags");
+        request.setConfig(RequestConfig.custom()
+                .setConnectTimeout(probeTimeoutMs)
+                .setConnectionRequestTimeout(probeTimeoutMs)
+                .setSocketTimeout(probeTimeoutMs)
+                .build());
+
+        try (CloseableHttpResponse response = httpClientService.getClient().execute(request)) {
+            if (response.getStatusLine().getStatusCode() != 200) {
+                EntityUtils.consume(response.getEntity());
+                markUnreachable(endpoint, "status " + response.getStatusLine().getStatusCode());
+                return;
+            }
+            JsonNode tags = new ObjectMapper().readTree(response.getEntity().getContent());
+            Set<String> models = new HashSet<>();
+            for (JsonNode model : tags.path("models")) {
+                models.add(normalizeModel(model.path("name").asText()));
+            }
+            endpoint.models = models;
+            if (!endpoint.reachable) {
+                logger.info("Instância do Ollama " + endpoint.url + " de volta ao pool");
+            }
+            endpoint.reachable = true;
+        } catch (Exception e) {
+            markUnreachable(endpoint, e.getMessage());
+        }
+    }
+
+    private void markUnreachable(Endpoint endpoint, String reason) {
+        if (endpoint.reachable) {
+            logger.warn("Instância do Ollama " + endpoint.url + " indisponível: " + reason);
+        }
+        endpoint.reachable = false;
+    }
+
+    // "codellama" e "codellama:latest" são o mesmo modelo
+    private static String normalizeModel(String model) {
+        return model.contains(":") ? model : model + ":latest";
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        if (prober != null) {
+            prober.interrupt();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package mvp.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.json.Json;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carrega o modelo em todas as instâncias do Ollama na subida da aplicação e o mantém carregado.
+ *
+ * Sem isso o primeiro webhook após um deploy, ou após o Ollama descarregar o modelo por
+ * inatividade, espera vários segundos pela carga antes do primeiro token. Uma requisição ao
+ * /api/generate sem prompt apenas carrega o modelo; ela é repetida a cada
+ * {@code ping-interval-seconds} com o mesmo {@code keep_alive} usado nas requisições de chat.
+ */
+@ApplicationScoped
+public class OllamaModelWarmup {
+
+    private static final Logger logger = LoggerFactory.getLogger(OllamaModelWarmup.class);
+
+    @ConfigProperty(name = "ollama.warmup.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "ollama.warmup.ping-interval-seconds", defaultValue = "300")
+    long pingIntervalSeconds;
+
+    @ConfigProperty(name = "ollama.model", defaultValue = "codellama")
+    String model;
+
+    @ConfigProperty(name = "ollama.keep-alive", defaultValue = "30m")
+    String keepAlive;
+
+    @Inject
+    OllamaEndpointPool endpointPool;
+
+    @Inject
+    HttpClientService httpClientService;
+
+    @Inject
+    MeterRegistry registry;
+
+    private volatile boolean running;
+    private Thread pinger;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        pinger = Thread.ofVirtual().name("ollama-warmup").start(this::run);
+    }
+
+    private void run() {
+        // Carga inicial em paralelo em todas as instâncias
+        Thread[] loaders = endpointPool.endpoints().stream()
+                .map(endpoint -> Thread.ofVirtual().name("ollama-warmup-" + endpoint.url())
+                        .start(() -> load(endpoint, "startup")))
+                .toArray(Thread[]::new);
+        try {
+            for (Thread loader : loaders) {
+                loader.join();
+            }
+            while (running) {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(pingIntervalSeconds));
+                endpointPool.endpoints().forEach(endpoint -> load(endpoint, "keep-alive"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void load(OllamaEndpointPool.Endpoint endpoint, String phase) {
+        HttpPost request = new HttpPost(endpoint.url() + "/api/generate");
+        request.setEntity(new StringEntity(Json.createObjectBuilder()
+                .add("model", model)
+                .add("keep_alive", keepAlive)
+                .build()
+                .toString(), ContentType.APPLICATION_JSON));
+
+        long start = System.nanoTime();
+        try (CloseableHttpResponse response = httpClientService.getClient().execute(request)) {
+            EntityUtils.consume(response.getEntity());
+            int status = response.getStatusLine().getStatusCode();
+            if (status != 200) {
+                logger.warn("Falha ao carregar o modelo " + model + " em " + endpoint.url() + ". Status: " + status);
+                return;
+            }
+            long elapsed = System.nanoTime() - start;
+            Timer.builder("ollama.model.load")
+                    .description("Tempo da requisição de carga do modelo no Ollama")
+                    .tag("endpoint", endpoint.url())
+                    .tag("phase", phase)
+                    .register(registry)
+                    .record(elapsed, TimeUnit.NANOSECONDS);
+            if (phase.equals("startup")) {
+                logger.info("Modelo {} carregado em {} em {} ms", model, endpoint.url(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+        } catch (Exception e) {
+            logger.warn("Falha ao carregar o modelo " + model + " em " + endpoint.url() + ": " + e.getMessage());
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        running = false;
+        if (pinger != null) {
+            pinger.interrupt();
+        }
+    }
+}
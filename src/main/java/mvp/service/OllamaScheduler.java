@@ -0,0 +1,208 @@
+package mvp.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Limita as chamadas simultâneas ao Ollama e distribui as vagas entre as empresas.
+ *
+ * No máximo {@code max-in-flight} chamadas ficam em andamento (alinhado ao OLLAMA_NUM_PARALLEL);
+ * as demais aguardam em uma fila justa ponderada (self-clocked fair queuing): cada requisição
+ * recebe uma etiqueta de término {@code max(tempo virtual, última etiqueta da empresa) + 1/peso}
+ * e a menor etiqueta é atendida primeiro. Assim uma empresa com centenas de itens na fila
+ * não impede o atendimento das demais.
+ */
+@ApplicationScoped
+public class OllamaScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(OllamaScheduler.class);
+
+    // Chamadas sem empresa identificada (chat, resumos)
+    public static final String DEFAULT_TENANT = "default";
+
+    @ConfigProperty(name = "ollama.scheduler.max-in-flight", defaultValue = "2")
+    int maxInFlight;
+
+    // Pesos por empresa no formato company_id:peso (padrão 1)
+    @ConfigProperty(name = "ollama.scheduler.weights")
+    Optional<List<String>> weightsConfig;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final class Ticket {
+        final Tenant tenant;
+        final double finish;
+        final long sequence;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Void> granted = new CompletableFuture<>();
+
+        Ticket(Tenant tenant, double finish, long sequence) {
+            this.tenant = tenant;
+            this.finish = finish;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class Tenant {
+        final double weight;
+        final AtomicInteger depth = new AtomicInteger();
+        final Timer wait;
+        double lastFinish;
+
+        Tenant(double weight, Timer wait) {
+            this.weight = weight;
+            this.wait = wait;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Ticket> waiting = new PriorityQueue<>(
+            Comparator.<Ticket>comparingDouble(ticket -> ticket.finish).thenComparingLong(ticket -> ticket.sequence));
+    private final Map<String, Tenant> tenants = new HashMap<>();
+    private final Map<String, Double> weights = new HashMap<>();
+    private double virtualTime;
+    private long sequence;
+    private int inFlight;
+
+    @PostConstruct
+    void init() {
+        weightsConfig.ifPresent(entries -> entries.forEach(entry -> {
+            String[] parts = entry.split(":");
+            try {
+                weights.put(parts[0].trim(), Double.parseDouble(parts[1].trim()));
+            } catch (RuntimeException e) {
+                logger.warn("Peso inválido em ollama.scheduler.weights: " + entry);
+            }
+        }));
+
+        Gauge.builder("ollama.scheduler.in-flight", this, scheduler -> scheduler.inFlight())
+                .description("Chamadas ao Ollama em andamento")
+                .register(registry);
+    }
+
+    /**
+     * Executa a chamada ao Ollama assim que houver vaga para a empresa informada.
+     */
+    public <T> T call(String tenant, Supplier<T> task) {
+        acquire(tenant != null ? tenant : DEFAULT_TENANT);
+        try {
+            return task.get();
+        } finally {
+            release();
+        }
+    }
+
+    private void acquire(String tenantId) {
+        Ticket ticket;
+        lock.lock();
+        try {
+            Tenant tenant = tenant(tenantId);
+            double start = Math.max(virtualTime, tenant.lastFinish);
+            double finish = start + 1.0 / tenant.weight;
+            tenant.lastFinish = finish;
+            if (inFlight < maxInFlight && waiting.isEmpty()) {
+                // Atendida na hora: o tempo virtual acompanha, senão uma empresa sozinha acumularia
+                // etiquetas à frente dele e ficaria atrás de todas quando a fila voltasse a se formar
+                virtualTime = start;
+                inFlight++;
+                tenant.wait.record(0, TimeUnit.NANOSECONDS);
+                return;
+            }
+            ticket = new Ticket(tenant, finish, sequence++);
+            tenant.depth.incrementAndGet();
+            waiting.add(ticket);
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            ticket.granted.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(ticket);
+            throw new IllegalStateException("Interrompido aguardando vaga no Ollama", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Desiste da vaga: sai da fila ou, se já foi atendido, devolve a vaga
+    private void abandon(Ticket ticket) {
+        boolean removed;
+        lock.lock();
+        try {
+            removed = waiting.remove(ticket);
+            if (removed) {
+                ticket.tenant.depth.decrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (!removed) {
+            release();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            Ticket next = waiting.poll();
+            if (next == null) {
+                inFlight--;
+                return;
+            }
+            // A vaga passa direto para o próximo; o tempo virtual avança até a etiqueta atendida
+            virtualTime = Math.max(virtualTime, next.finish);
+            next.tenant.depth.decrementAndGet();
+            next.tenant.wait.record(System.nanoTime() - next.enqueuedAt, TimeUnit.NANOSECONDS);
+            next.granted.complete(null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Deve ser chamado com o lock
+    private Tenant tenant(String tenantId) {
+        return tenants.computeIfAbsent(tenantId, id -> {
+            Tenant tenant = new Tenant(weights.getOrDefault(id, 1.0), Timer.builder("ollama.scheduler.wait")
+                    .description("Tempo de espera por vaga no Ollama")
+                    .tag("tenant", id)
+                    .register(registry));
+            Gauge.builder("ollama.scheduler.queue.depth", tenant.depth, AtomicInteger::get)
+                    .description("Chamadas aguardando vaga no Ollama")
+                    .tag("tenant", id)
+                    .register(registry);
+            return tenant;
+        });
+    }
+
+    private int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
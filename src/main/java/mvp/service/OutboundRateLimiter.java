@@ -0,0 +1,258 @@
+package mvp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.util.EntityUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chamadas ao Jira e ao Azure DevOps respeitando os limites de requisições de cada serviço.
+ *
+ * Cada combinação de host e credencial tem um token bucket ({@code requests-per-second} com
+ * rajada de {@code burst}); a requisição aguarda a sua vez em vez de disparar direto. Os headers
+ * {@code X-RateLimit-*} das respostas ajustam o ritmo e, com o saldo zerado, seguram o bucket até
+ * o reset. Respostas 429 (e 503 em métodos idempotentes) são repetidas até {@code max-retries}
+ * vezes, após o {@code Retry-After} ou um backoff exponencial com jitter. Um {@code Retry-After}
+ * maior que {@code max-backoff-ms} não é encurtado: a resposta volta para o chamador e o bucket
+ * fica bloqueado até o horário pedido pelo serviço.
+ */
+@ApplicationScoped
+public class OutboundRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundRateLimiter.class);
+
+    private static final Set<String> IDEMPOTENT = Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE");
+
+    @ConfigProperty(name = "outbound.rate-limit.requests-per-second", defaultValue = "10")
+    double requestsPerSecond;
+
+    @ConfigProperty(name = "outbound.rate-limit.burst", defaultValue = "10")
+    double burst;
+
+    @ConfigProperty(name = "outbound.rate-limit.max-retries", defaultValue = "4")
+    int maxRetries;
+
+    @ConfigProperty(name = "outbound.rate-limit.base-backoff-ms", defaultValue = "500")
+    long baseBackoffMs;
+
+    @ConfigProperty(name = "outbound.rate-limit.max-backoff-ms", defaultValue = "60000")
+    long maxBackoffMs;
+
+    @Inject
+    HttpClientService httpClientService;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final class Bucket {
+        final String host;
+        final Timer throttle;
+        final Counter throttled;
+        double rate = requestsPerSecond;
+        double tokens = burst;
+        long refilledAt = System.nanoTime();
+        // Comparado com System.nanoTime(), que pode ser negativo: nunca parte de zero
+        long blockedUntil = refilledAt;
+
+        Bucket(String host) {
+            this.host = host;
+            this.throttle = Timer.builder("outbound.throttle")
+                    .description("Tempo aguardando vaga no limite de requisições do serviço externo")
+                    .tag("host", host)
+                    .register(registry);
+            this.throttled = Counter.builder("outbound.throttled")
+                    .description("Respostas 429/503 recebidas do serviço externo")
+                    .tag("host", host)
+                    .register(registry);
+        }
+
+        // Reserva um token e devolve quanto esperar por ele; o saldo negativo forma a fila
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledAt) / 1e9 * rate);
+            refilledAt = now;
+            tokens -= 1;
+            long wait = tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+            return Math.max(wait, blockedUntil - now);
+        }
+
+        synchronized void blockUntil(long nanoTime) {
+            if (nanoTime - blockedUntil > 0) {
+                blockedUntil = nanoTime;
+            }
+        }
+
+        synchronized void adjustRate(double perSecond) {
+            if (perSecond > 0 && perSecond != rate) {
+                logger.info("Limite de {} ajustado para {} req/s", host, String.format("%.2f", perSecond));
+                rate = perSecond;
+            }
+        }
+    }
+
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Executa a requisição pelo cliente HTTP compartilhado, aguardando a vez no bucket do host e
+     * da credencial (header Authorization). A resposta devolvida deve ser fechada pelo chamador.
+     */
+    public CloseableHttpResponse execute(HttpUriRequest request) throws IOException {
+        String host = request.getURI().getHost();
+        Header authorization = request.getFirstHeader("Authorization");
+        Bucket bucket = buckets.computeIfAbsent(host + "|" + fingerprint(authorization != null ? authorization.getValue() : ""),
+                key -> new Bucket(host));
+
+        for (int attempt = 0; ; attempt++) {
+            long wait = bucket.reserve();
+            if (wait > 0) {
+                sleep(wait);
+            }
+            bucket.throttle.record(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+
+            CloseableHttpResponse response = httpClientService.getClient().execute(request);
+            observe(bucket, response);
+
+            int status = response.getStatusLine().getStatusCode();
+            if (status != 429 && status != 503) {
+                return response;
+            }
+            bucket.throttled.increment();
+
+            long delay = retryDelay(response, attempt);
+            bucket.blockUntil(System.nanoTime() + delay);
+            // 503 pode ter chegado depois de o POST ser aplicado: repetir criaria duplicatas
+            if (attempt >= maxRetries || delay > TimeUnit.MILLISECONDS.toNanos(maxBackoffMs)
+                    || (status == 503 && !IDEMPOTENT.contains(request.getMethod()))) {
+                return response;
+            }
+            logger.warn("{} respondeu {}; nova tentativa ({}/{}) em {} ms", host, status, attempt + 1, maxRetries,
+                    TimeUnit.NANOSECONDS.toMillis(delay));
+            EntityUtils.consumeQuietly(response.getEntity());
+            response.close();
+        }
+    }
+
+    // Ajusta o bucket pelos headers de limite (Jira e Azure DevOps usam variações de X-RateLimit-*)
+    private void observe(Bucket bucket, HttpResponse response) {
+        String remaining = header(response, "X-RateLimit-Remaining");
+        String reset = header(response, "X-RateLimit-Reset");
+        if (remaining != null && reset != null) {
+            try {
+                if (Double.parseDouble(remaining) <= 0) {
+                    Long resetAt = resetNanoTime(reset);
+                    if (resetAt != null) {
+                        bucket.blockUntil(resetAt);
+                    }
+                }
+            } catch (NumberFormatException ignored) {
+                // Header fora do formato esperado: segue com o ritmo atual
+            }
+        }
+
+        // Jira: FillRate tokens a cada Interval-Seconds
+        String fillRate = header(response, "X-RateLimit-FillRate");
+        String interval = header(response, "X-RateLimit-Interval-Seconds");
+        if (fillRate != null && interval != null) {
+            try {
+                bucket.adjustRate(Double.parseDouble(fillRate) / Double.parseDouble(interval));
+            } catch (NumberFormatException ignored) {
+                // Idem
+            }
+        }
+    }
+
+    private long retryDelay(HttpResponse response, int attempt) {
+        long backoff = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt, 20));
+        // Jitter entre metade e o total do backoff: espalha as novas tentativas de chamadas que falharam juntas
+        long delay = TimeUnit.MILLISECONDS.toNanos(ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1));
+
+        String retryAfter = header(response, "Retry-After");
+        if (retryAfter != null) {
+            Long retryAt = retryAfterNanoTime(retryAfter.trim());
+            if (retryAt != null) {
+                // O prazo do serviço prevalece sobre o backoff local
+                return Math.max(delay, retryAt - System.nanoTime());
+            }
+        }
+        return delay;
+    }
+
+    // Retry-After em segundos ou como data HTTP
+    private static Long retryAfterNanoTime(String value) {
+        try {
+            return System.nanoTime() + TimeUnit.SECONDS.toNanos(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            try {
+                return toNanoTime(ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+            } catch (Exception ignored) {
+                return null;
+            }
+        }
+    }
+
+    // X-RateLimit-Reset em segundos desde a época (Azure DevOps) ou ISO-8601 (Jira)
+    private static Long resetNanoTime(String value) {
+        try {
+            return toNanoTime(Instant.ofEpochSecond(Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                return toNanoTime(OffsetDateTime.parse(value.trim()).toInstant());
+            } catch (Exception ignored) {
+                return null;
+            }
+        }
+    }
+
+    private static long toNanoTime(Instant instant) {
+        long millis = instant.toEpochMilli() - System.currentTimeMillis();
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+    }
+
+    private static String header(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    private static void sleep(long nanos) throws InterruptedIOException {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrompido aguardando o limite de requisições");
+        }
+    }
+
+    // A credencial não fica em memória em texto puro
+    private static String fingerprint(String credential) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(credential.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package mvp.service;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Armazenamento das memórias de chat por usuário, com uso de heap limitado.
+ *
+ * As conversas ativas ficam em um mapa LRU limitado por quantidade e por um orçamento global
+ * de bytes. Conversas expulsas (por LRU ou por inatividade) são gravadas em disco, compactadas,
+ * e recarregadas sob demanda no próximo acesso. No encerramento tudo o que está em memória
+ * é gravado, então as conversas sobrevivem a um restart.
+ */
+@ApplicationScoped
+public class PersistentChatMemoryStore implements ChatMemoryStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(PersistentChatMemoryStore.class);
+
+    private static final String FILE_SUFFIX = ".json.gz";
+    // Custo fixo estimado por mensagem (objeto, lista, tipo)
+    private static final int MESSAGE_OVERHEAD = 64;
+
+    @ConfigProperty(name = "chat-memory.dir", defaultValue = "data/chat-memory")
+    String dir;
+
+    @ConfigProperty(name = "chat-memory.max-entries", defaultValue = "10000")
+    int maxEntries;
+
+    @ConfigProperty(name = "chat-memory.max-bytes", defaultValue = "33554432")
+    long maxBytes;
+
+    @ConfigProperty(name = "chat-memory.idle-minutes", defaultValue = "30")
+    long idleMinutes;
+
+    @Inject
+    MeterRegistry registry;
+
+    private record Entry(List<ChatMessage> messages, long bytes, long lastAccess) {
+    }
+
+    // Ordem de acesso: o primeiro elemento é o menos recentemente usado
+    private final LinkedHashMap<String, Entry> resident = new LinkedHashMap<>(256, 0.75f, true);
+    private long residentBytes;
+    // Conversas já fora do mapa, mas ainda sendo gravadas em disco
+    private final Map<String, List<ChatMessage>> spilling = new ConcurrentHashMap<>();
+
+    private Path directory;
+    private Counter spilled;
+    private Counter rehydrated;
+    private volatile boolean running;
+    private Thread sweeper;
+
+    @PostConstruct
+    void init() {
+        directory = Path.of(dir);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new IllegalStateException("Não foi possível criar o diretório de memórias de chat: " + directory, e);
+        }
+
+        spilled = Counter.builder("chat.memory.spilled")
+                .description("Conversas gravadas em disco ao sair da memória")
+                .register(registry);
+        rehydrated = Counter.builder("chat.memory.rehydrated")
+                .description("Conversas recarregadas do disco")
+                .register(registry);
+        Gauge.builder("chat.memory.resident.entries", this, store -> store.residentEntries())
+                .description("Conversas mantidas em memória")
+                .register(registry);
+        Gauge.builder("chat.memory.resident.bytes", this, store -> store.residentBytes())
+                .description("Tamanho estimado das conversas em memória")
+                .register(registry);
+
+        running = true;
+        sweeper = Thread.ofVirtual().name("chat-memory-sweeper").start(this::sweep);
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        String id = memoryId.toString();
+        synchronized (this) {
+            Entry entry = resident.get(id);
+            if (entry != null) {
+                resident.put(id, new Entry(entry.messages(), entry.bytes(), System.nanoTime()));
+                return new ArrayList<>(entry.messages());
+            }
+        }
+
+        // Conversa expulsa cuja gravação ainda não terminou; senão, leitura do disco fora do lock
+        List<ChatMessage> messages = spilling.get(id);
+        if (messages == null) {
+            messages = load(id);
+        }
+        List<Map.Entry<String, Entry>> evicted;
+        synchronized (this) {
+            Entry entry = resident.get(id);
+            if (entry != null) {
+                // Outra thread já carregou ou atualizou a conversa
+                return new ArrayList<>(entry.messages());
+            }
+            if (!messages.isEmpty()) {
+                rehydrated.increment();
+            }
+            put(id, messages);
+            evicted = evictOverBudget();
+        }
+        spill(evicted);
+        return new ArrayList<>(messages);
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        List<Map.Entry<String, Entry>> evicted;
+        synchronized (this) {
+            put(memoryId.toString(), List.copyOf(messages));
+            evicted = evictOverBudget();
+        }
+        spill(evicted);
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        String id = memoryId.toString();
+        synchronized (this) {
+            Entry removed = resident.remove(id);
+            if (removed != null) {
+                residentBytes -= removed.bytes();
+            }
+            spilling.remove(id);
+        }
+        try {
+            Files.deleteIfExists(fileFor(id));
+        } catch (IOException e) {
+            logger.warn("Falha ao remover memória de chat do disco: " + e.getMessage());
+        }
+    }
+
+    private synchronized int residentEntries() {
+        return resident.size();
+    }
+
+    private synchronized long residentBytes() {
+        return residentBytes;
+    }
+
+    // Deve ser chamado com o lock
+    private void put(String id, List<ChatMessage> messages) {
+        Entry entry = new Entry(messages, estimateBytes(messages), System.nanoTime());
+        Entry previous = resident.put(id, entry);
+        residentBytes += entry.bytes() - (previous != null ? previous.bytes() : 0);
+    }
+
+    // Deve ser chamado com o lock; mantém ao menos a conversa mais recente em memória
+    private List<Map.Entry<String, Entry>> evictOverBudget() {
+        List<Map.Entry<String, Entry>> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Entry>> it = resident.entrySet().iterator();
+        while ((resident.size() > maxEntries || residentBytes > maxBytes) && resident.size() > 1 && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            it.remove();
+            residentBytes -= eldest.getValue().bytes();
+            spilling.put(eldest.getKey(), eldest.getValue().messages());
+            evicted.add(Map.entry(eldest.getKey(), eldest.getValue()));
+        }
+        return evicted;
+    }
+
+    private List<Map.Entry<String, Entry>> evictIdle(long idleNanos) {
+        List<Map.Entry<String, Entry>> evicted = new ArrayList<>();
+        long now = System.nanoTime();
+        synchronized (this) {
+            // Iterar não altera a ordem de acesso; os mais antigos vêm primeiro
+            Iterator<Map.Entry<String, Entry>> it = resident.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Entry> eldest = it.next();
+                if (now - eldest.getValue().lastAccess() < idleNanos) {
+                    break;
+                }
+                it.remove();
+                residentBytes -= eldest.getValue().bytes();
+                spilling.put(eldest.getKey(), eldest.getValue().messages());
+                evicted.add(Map.entry(eldest.getKey(), eldest.getValue()));
+            }
+        }
+        return evicted;
+    }
+
+    private void sweep() {
+        long idleNanos = TimeUnit.MINUTES.toNanos(idleMinutes);
+        while (running) {
+            try {
+                Thread.sleep(Math.max(1000, TimeUnit.NANOSECONDS.toMillis(idleNanos) / 4));
+            } catch (InterruptedException e) {
+                return;
+            }
+            spill(evictIdle(idleNanos));
+        }
+    }
+
+    private void spill(List<Map.Entry<String, Entry>> evicted) {
+        for (Map.Entry<String, Entry> entry : evicted) {
+            try {
+                write(entry.getKey(), entry.getValue().messages());
+                spilled.increment();
+            } catch (IOException e) {
+                logger.error("Falha ao gravar memória de chat em disco: " + e.getMessage());
+            } finally {
+                spilling.remove(entry.getKey(), entry.getValue().messages());
+            }
+        }
+    }
+
+    private void write(String id, List<ChatMessage> messages) throws IOException {
+        Path target = fileFor(id);
+        if (messages.isEmpty()) {
+            Files.deleteIfExists(target);
+            return;
+        }
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+            out.write(ChatMessageSerializer.messagesToJson(messages).getBytes(StandardCharsets.UTF_8));
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private List<ChatMessage> load(String id) {
+        Path file = fileFor(id);
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return List.copyOf(ChatMessageDeserializer.messagesFromJson(new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            logger.error("Memória de chat corrompida em " + file + ", descartando: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    private Path fileFor(String id) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(id.getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(HexFormat.of().formatHex(hash) + FILE_SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long estimateBytes(List<ChatMessage> messages) {
+        long bytes = 0;
+        for (ChatMessage message : messages) {
+            String text = textOf(message);
+            bytes += MESSAGE_OVERHEAD + (text != null ? 2L * text.length() : 0);
+        }
+        return bytes;
+    }
+
+    // ChatMessage.text() está depreciado; cada tipo expõe o próprio texto
+    private static String textOf(ChatMessage message) {
+        if (message instanceof UserMessage user) {
+            return user.contents().stream()
+                    .filter(TextContent.class::isInstance)
+                    .map(content -> ((TextContent) content).text())
+                    .collect(Collectors.joining());
+        }
+        if (message instanceof AiMessage ai) {
+            return ai.text();
+        }
+        if (message instanceof SystemMessage system) {
+            return system.text();
+        }
+        if (message instanceof ToolExecutionResultMessage tool) {
+            return tool.text();
+        }
+        return null;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        sweeper.interrupt();
+
+        List<Map.Entry<String, Entry>> all;
+        synchronized (this) {
+            all = new ArrayList<>(resident.entrySet());
+            resident.clear();
+            residentBytes = 0;
+        }
+        spill(all);
+    }
+}
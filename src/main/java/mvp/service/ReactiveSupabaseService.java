@@ -0,0 +1,429 @@
+package mvp.service;
+
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.ext.web.client.HttpRequest;
+import io.vertx.mutiny.ext.web.client.HttpResponse;
+import io.vertx.mutiny.ext.web.client.WebClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonStructure;
+import jakarta.json.JsonValue;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Variante não bloqueante do {@link SupabaseService} para os CRUDs (empresas, projetos, usuários
+ * e fluxos), sobre o WebClient do Vert.x. As chamadas ao PostgREST não ocupam uma thread de
+ * trabalho enquanto aguardam a resposta, então poucas threads de event loop atendem muitas
+ * requisições simultâneas.
+ *
+ * As alterações invalidam os mesmos caches de tenant que o {@link SupabaseService}.
+ *
+ * As listagens também podem ser paginadas por cursor (id crescente, {@code id=gt.<cursor>}) ou
+ * percorridas em stream, página a página, sem carregar a tabela inteira na memória.
+ */
+@ApplicationScoped
+public class ReactiveSupabaseService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveSupabaseService.class);
+
+    @ConfigProperty(name = "supabase.url")
+    String supabaseUrl;
+
+    @ConfigProperty(name = "supabase.service-role-key")
+    String supabaseServiceRoleKey;
+
+    @ConfigProperty(name = "supabase.page.default-size", defaultValue = "100")
+    int defaultPageSize;
+
+    // Maior página aceita nas listagens paginadas
+    @ConfigProperty(name = "supabase.page.max-size", defaultValue = "1000")
+    int maxPageSize;
+
+    // Tamanho das páginas buscadas ao PostgREST nas listagens em stream
+    @ConfigProperty(name = "supabase.stream.page-size", defaultValue = "500")
+    int streamPageSize;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    @CacheName(SupabaseService.COMPANY_BY_URL_CACHE)
+    Cache companyByUrlCache;
+
+    @Inject
+    @CacheName(SupabaseService.PROJECT_BY_KEY_CACHE)
+    Cache projectByKeyCache;
+
+    @Inject
+    @CacheName(SupabaseService.PROJECT_PAT_CACHE)
+    Cache projectPatCache;
+
+    private WebClient client;
+
+    @PostConstruct
+    void init() {
+        client = WebClient.create(vertx, new WebClientOptions()
+                .setKeepAlive(true)
+                .setMaxPoolSize(50));
+    }
+
+    @PreDestroy
+    void close() {
+        client.close();
+    }
+
+    // --- Métodos auxiliares ---
+
+    /**
+     * Envia a requisição com a chave de role de serviço. O corpo da resposta é devolvido
+     * como está, para o chamador verificar o status (201/204) como no SupabaseService.
+     */
+    private Uni<HttpResponse<Buffer>> send(HttpMethod method, String path, String jsonBody) {
+        return send(method, path, jsonBody, Map.of());
+    }
+
+    private Uni<HttpResponse<Buffer>> send(HttpMethod method, String path, String jsonBody, Map<String, String> headers) {
+        HttpRequest<Buffer> request = client.requestAbs(method, supabaseUrl + path)
+                .putHeader("apikey", supabaseServiceRoleKey)
+                .putHeader("Authorization", "Bearer " + supabaseServiceRoleKey)
+                .putHeader("Accept", "application/json");
+        headers.forEach(request::putHeader);
+
+        Uni<HttpResponse<Buffer>> response = jsonBody != null
+                ? request.putHeader("Content-Type", "application/json").sendBuffer(Buffer.buffer(jsonBody))
+                : request.send();
+
+        return response.onFailure().transform(e -> {
+            log.error("Erro ao enviar " + method + " para " + path + ": " + e.getMessage());
+            return new WebApplicationException("Erro de comunicação com Supabase.", Response.Status.INTERNAL_SERVER_ERROR);
+        });
+    }
+
+    private Uni<List<JsonObject>> getList(String path) {
+        return getList(path, Map.of());
+    }
+
+    private Uni<List<JsonObject>> getList(String path, Map<String, String> headers) {
+        return send(HttpMethod.GET, path, null, headers).map(response -> {
+            if (response.statusCode() / 100 != 2) {
+                String errorDetails = response.bodyAsString();
+                log.error("Erro Supabase GET: Status " + response.statusCode() + " - " + errorDetails + " para " + path);
+                throw new WebApplicationException("Erro Supabase: " + errorDetails, response.statusCode());
+            }
+            return toList(response.bodyAsString());
+        });
+    }
+
+    /**
+     * Corpo da resposta do GET como veio do PostgREST, sem conversão, para ser repassado ao
+     * cliente. Com {@code single} pede um único objeto em vez de um array; sem registro
+     * o resultado é null.
+     */
+    private Uni<Buffer> getRaw(String path, boolean single) {
+        Map<String, String> headers = single ? Map.of("Accept", "application/vnd.pgrst.object+json") : Map.of();
+        return send(HttpMethod.GET, path, null, headers).map(response -> {
+            // 406: nenhuma linha para o pedido de objeto único
+            if (single && response.statusCode() == 406) {
+                return null;
+            }
+            if (response.statusCode() / 100 != 2) {
+                String errorDetails = response.bodyAsString();
+                log.error("Erro Supabase GET: Status " + response.statusCode() + " - " + errorDetails + " para " + path);
+                throw new WebApplicationException("Erro Supabase: " + errorDetails, response.statusCode());
+            }
+            return response.body() != null ? response.body() : Buffer.buffer("[]");
+        });
+    }
+
+    private Uni<JsonObject> getFirst(String path) {
+        return getList(path).map(list -> list.isEmpty() ? null : list.get(0));
+    }
+
+    /**
+     * Tamanho efetivo da página pedida pelo cliente: o padrão se ausente, limitado ao máximo.
+     */
+    public int pageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return Math.min(defaultPageSize, maxPageSize);
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    /**
+     * Página ordenada por id com os registros de id maior que {@code after} (todos se nulo).
+     * O tamanho vai no header Range do PostgREST, limitado a {@code supabase.page.max-size}.
+     */
+    private Uni<List<JsonObject>> getPage(String table, Long after, int limit) {
+        return getPage(table, "", after, limit);
+    }
+
+    // query: filtros adicionais do PostgREST, já no formato "&coluna=op.valor"
+    private Uni<List<JsonObject>> getPage(String table, String query, Long after, int limit) {
+        int size = Math.max(1, Math.min(limit, maxPageSize));
+        String path = "/rest/v1/" + table + "?order=id.asc" + query + (after != null ? "&id=gt." + after : "");
+        return getList(path, Map.of("Range-Unit", "items", "Range", "0-" + (size - 1)));
+    }
+
+    private Multi<JsonObject> stream(String table) {
+        return stream(table, "");
+    }
+
+    // Percorre a tabela página a página; cada página só é buscada quando a anterior foi consumida
+    private Multi<JsonObject> stream(String table, String query) {
+        return Multi.createBy().repeating()
+                .uni(() -> new AtomicReference<Long>(), cursor -> getPage(table, query, cursor.get(), streamPageSize)
+                        .invoke(page -> {
+                            if (!page.isEmpty()) {
+                                cursor.set(page.get(page.size() - 1).getJsonNumber("id").longValue());
+                            }
+                        }))
+                .whilst(page -> page.size() == Math.min(streamPageSize, maxPageSize))
+                .onItem().disjoint();
+    }
+
+    private static List<JsonObject> toList(String body) {
+        List<JsonObject> list = new ArrayList<>();
+        if (body == null || body.isBlank()) {
+            return list;
+        }
+        try (JsonReader reader = Json.createReader(new StringReader(body))) {
+            JsonStructure json = reader.read();
+            if (json.getValueType() == JsonValue.ValueType.OBJECT) {
+                list.add((JsonObject) json);
+            } else if (json.getValueType() == JsonValue.ValueType.ARRAY) {
+                for (JsonValue value : (JsonArray) json) {
+                    if (value.getValueType() == JsonValue.ValueType.OBJECT) {
+                        list.add(value.asJsonObject());
+                    }
+                }
+            }
+        }
+        return list;
+    }
+
+    // Invalida os caches informados apenas se a alteração foi aplicada
+    private static Uni<HttpResponse<Buffer>> invalidating(Uni<HttpResponse<Buffer>> write, Cache... caches) {
+        return write.call(response -> {
+            if (response.statusCode() / 100 != 2) {
+                return Uni.createFrom().voidItem();
+            }
+            List<Uni<Void>> invalidations = new ArrayList<>();
+            for (Cache cache : caches) {
+                invalidations.add(cache.invalidateAll());
+            }
+            return Uni.join().all(invalidations).andFailFast().replaceWithVoid();
+        });
+    }
+
+    // --- Company ---
+    public Uni<HttpResponse<Buffer>> createCompany(String json) {
+        return invalidating(send(HttpMethod.POST, "/rest/v1/companies", json), companyByUrlCache, projectPatCache);
+    }
+
+    public Uni<List<JsonObject>> getCompaniesPage(Long after, int limit) {
+        return getPage("companies", after, limit);
+    }
+
+    public Multi<JsonObject> streamCompanies() {
+        return stream("companies");
+    }
+
+    public Uni<Buffer> getAllCompaniesRaw() {
+        return getRaw("/rest/v1/companies", false);
+    }
+
+    public Uni<Buffer> getCompanyByIdRaw(Long id) {
+        return getRaw("/rest/v1/companies?id=eq." + id, true);
+    }
+
+    public Uni<JsonObject> getCompanyById(Long id) {
+        return getFirst("/rest/v1/companies?id=eq." + id);
+    }
+
+    public Uni<HttpResponse<Buffer>> updateCompany(Long id, String json) {
+        return invalidating(send(HttpMethod.PATCH, "/rest/v1/companies?id=eq." + id, json), companyByUrlCache, projectPatCache);
+    }
+
+    public Uni<HttpResponse<Buffer>> deleteCompany(Long id) {
+        return invalidating(send(HttpMethod.DELETE, "/rest/v1/companies?id=eq." + id, null), companyByUrlCache, projectPatCache);
+    }
+
+    public Uni<List<JsonObject>> getCompanyOptions() {
+        return getList("/rest/v1/companies?select=id,name&order=name");
+    }
+
+    // --- User ---
+    public Uni<HttpResponse<Buffer>> createUser(String json) {
+        return send(HttpMethod.POST, "/rest/v1/users", json);
+    }
+
+    public Uni<List<JsonObject>> getUsersPage(Long after, int limit) {
+        return getPage("users", after, limit);
+    }
+
+    public Multi<JsonObject> streamUsers() {
+        return stream("users");
+    }
+
+    public Uni<Buffer> getAllUsersRaw() {
+        return getRaw("/rest/v1/users", false);
+    }
+
+    public Uni<Buffer> getUserByIdRaw(Long id) {
+        return getRaw("/rest/v1/users?id=eq." + id, true);
+    }
+
+    public Uni<JsonObject> getUserById(Long id) {
+        return getFirst("/rest/v1/users?id=eq." + id);
+    }
+
+    public Uni<JsonObject> getUserByUsername(String username) {
+        return getFirst("/rest/v1/users?username=eq." + username);
+    }
+
+    public Uni<HttpResponse<Buffer>> updateUser(Long id, String json) {
+        return invalidating(send(HttpMethod.PATCH, "/rest/v1/users?id=eq." + id, json), projectPatCache);
+    }
+
+    public Uni<HttpResponse<Buffer>> deleteUser(Long id) {
+        return invalidating(send(HttpMethod.DELETE, "/rest/v1/users?id=eq." + id, null), projectPatCache);
+    }
+
+    // --- Project ---
+    public Uni<HttpResponse<Buffer>> createProject(String json) {
+        return invalidating(send(HttpMethod.POST, "/rest/v1/project", json), projectByKeyCache, projectPatCache);
+    }
+
+    public Uni<List<JsonObject>> getProjectsPage(Long after, int limit) {
+        return getPage("project", after, limit);
+    }
+
+    public Multi<JsonObject> streamProjects() {
+        return stream("project");
+    }
+
+    public Uni<Buffer> getAllProjectsRaw() {
+        return getRaw("/rest/v1/project", false);
+    }
+
+    public Uni<Buffer> getProjectByIdRaw(Long id) {
+        return getRaw("/rest/v1/project?id=eq." + id, true);
+    }
+
+    public Uni<JsonObject> getProjectById(Long id) {
+        return getFirst("/rest/v1/project?id=eq." + id);
+    }
+
+    public Uni<HttpResponse<Buffer>> updateProject(Long id, String json) {
+        return invalidating(send(HttpMethod.PATCH, "/rest/v1/project?id=eq." + id, json), projectByKeyCache, projectPatCache);
+    }
+
+    public Uni<HttpResponse<Buffer>> deleteProject(Long id) {
+        return invalidating(send(HttpMethod.DELETE, "/rest/v1/project?id=eq." + id, null), projectByKeyCache, projectPatCache);
+    }
+
+    // --- Logs ---
+    public Uni<Buffer> getLogsRaw(int limit) {
+        return getRaw("/rest/v1/logs?order=timestamp.desc&limit=" + limit, false);
+    }
+
+    // --- Messages ---
+
+    /**
+     * Mensagens para a contagem de tokens, em stream. Filtros nulos são ignorados; o período é
+     * {@code from} (inclusive) até {@code to} (exclusive) sobre created_at.
+     */
+    public Multi<JsonObject> streamMessagesForTokenSummary(Long companyId, Long projectId, String from, String to) {
+        StringBuilder query = new StringBuilder("&select=id,id_workitem,company_id,project_id,sender,created_at,message");
+        if (companyId != null) {
+            query.append("&company_id=eq.").append(companyId);
+        }
+        if (projectId != null) {
+            query.append("&project_id=eq.").append(projectId);
+        }
+        if (from != null) {
+            query.append("&created_at=gte.").append(from);
+        }
+        if (to != null) {
+            query.append("&created_at=lt.").append(to);
+        }
+        return stream("messages", query.toString());
+    }
+
+    /**
+     * Linhas de 'token_usage_rollups' (uma por empresa, projeto, dia e remetente) no período
+     * de {@code from} a {@code to}, ambos inclusive. Filtros nulos são ignorados.
+     */
+    public Uni<List<JsonObject>> getTokenUsageRollups(Long companyId, Long projectId, String from, String to) {
+        StringBuilder path = new StringBuilder("/rest/v1/token_usage_rollups?select=company_id,project_id,day,sender,tokens,messages");
+        if (companyId != null) {
+            path.append("&company_id=eq.").append(companyId);
+        }
+        if (projectId != null) {
+            path.append("&project_id=eq.").append(projectId);
+        }
+        if (from != null) {
+            path.append("&day=gte.").append(from);
+        }
+        if (to != null) {
+            path.append("&day=lte.").append(to);
+        }
+        return getList(path.toString());
+    }
+
+    // --- Message Processing (Fluxo) ---
+    public Uni<HttpResponse<Buffer>> createMessageProcessing(String json) {
+        return send(HttpMethod.POST, "/rest/v1/message_processing", json);
+    }
+
+    public Uni<List<JsonObject>> getMessageProcessingPage(Long after, int limit) {
+        return getPage("message_processing", after, limit);
+    }
+
+    public Multi<JsonObject> streamMessageProcessing() {
+        return stream("message_processing");
+    }
+
+    public Uni<Buffer> getAllMessageProcessingRaw() {
+        return getRaw("/rest/v1/message_processing", false);
+    }
+
+    public Uni<Buffer> getMessageProcessingByIdRaw(Long id) {
+        return getRaw("/rest/v1/message_processing?id=eq." + id, true);
+    }
+
+    public Uni<JsonObject> getMessageProcessingById(Long id) {
+        return getFirst("/rest/v1/message_processing?id=eq." + id);
+    }
+
+    public Uni<HttpResponse<Buffer>> updateMessageProcessing(Long id, String json) {
+        return send(HttpMethod.PATCH, "/rest/v1/message_processing?id=eq." + id, json);
+    }
+
+    public Uni<HttpResponse<Buffer>> deleteMessageProcessing(Long id) {
+        return send(HttpMethod.DELETE, "/rest/v1/message_processing?id=eq." + id, null);
+    }
+}
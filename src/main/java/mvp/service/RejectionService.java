@@ -3,14 +3,16 @@ package mvp.service;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.json.Json;
-import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonNumber;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonReader;
+import jakarta.json.JsonValue;
 import jakarta.ws.rs.core.Response;
 import mvp.resources.WorkItemResource;
 import mvp.utils.OllamaUtils;
 import mvp.utils.SupabaseUtils;
 import mvp.utils.UtilsService;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import java.io.StringReader;
 import java.util.List;
@@ -20,9 +22,15 @@ import static mvp.utils.UtilsService.parsePayload;
 @ApplicationScoped
 public class RejectionService {
 
+    @ConfigProperty(name = "ollama.model", defaultValue = "codellama")
+    String model;
+
     @Inject
     OllamaUtils ollamaUtils;
 
+    @Inject
+    ContextWindowBuilder contextWindowBuilder;
+
     @Inject
     SupabaseUtils supabaseUtils;
 
@@ -50,20 +58,13 @@ public class RejectionService {
 
             List<JsonObject> previousMessages = SupabaseUtils.getMessagesByWorkItemId(workItemId);
 
-            // Monta o array de mensagens para o Ollama
-            JsonArrayBuilder messagesArrayBuilder = Json.createArrayBuilder();
-            for (JsonObject message : previousMessages) {
-                messagesArrayBuilder.add(Json.createObjectBuilder()
-                        .add("role", message.getString("sender"))
-                        .add("content", message.getString("message")));
-            }
-
+            // Monta o array de mensagens para o Ollama, limitado ao orçamento de tokens
             JsonObject chatPayloadObject = Json.createObjectBuilder()
-                    .add("model", "codellama")  // Define o modelo como "codellama"
-                    .add("messages", messagesArrayBuilder)
+                    .add("model", model)  // Modelo configurado em ollama.model
+                    .add("messages", contextWindowBuilder.build(workItemId, previousMessages))
                     .build();
 
-            String assistantResponse = ollamaUtils.getChatResponse(chatPayloadObject);
+            String assistantResponse = ollamaUtils.getChatResponse(chatPayloadObject, tenantOf(previousMessages));
             if (assistantResponse == null) {
                 //return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Failed to get chat response").build();
                 return;
@@ -83,4 +84,14 @@ public class RejectionService {
             return;
         }
     }
+
+    // Empresa da conversa (gravada nas mensagens do usuário), para a fila justa do Ollama
+    private static String tenantOf(List<JsonObject> messages) {
+        return messages.stream()
+                .map(message -> message.get("company_id"))
+                .filter(JsonNumber.class::isInstance)
+                .map(JsonValue::toString)
+                .findFirst()
+                .orElse(OllamaScheduler.DEFAULT_TENANT);
+    }
 }
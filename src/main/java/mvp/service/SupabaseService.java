@@ -1,8 +1,12 @@
 package mvp.service;
 
+import io.quarkus.cache.CacheInvalidateAll;
+import io.quarkus.cache.CacheResult;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import jakarta.json.Json;
 import jakarta.json.JsonArray;
+import jakarta.json.JsonArrayBuilder;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonReader;
 import jakarta.json.JsonStructure;
@@ -36,6 +40,16 @@ public class SupabaseService {
     @ConfigProperty(name = "supabase.service-role-key")
     String supabaseServiceRoleKey;
 
+    // Caches das consultas de tenant feitas a cada webhook (configurados em application.properties)
+    public static final String COMPANY_BY_URL_CACHE = "company-by-url";
+    public static final String PROJECT_BY_KEY_CACHE = "project-by-key";
+    public static final String PROJECT_PAT_CACHE = "project-pat";
+
+    @Inject
+    LogShipper logShipper;
+
+    // Cliente JAX-RS único, com conexões keep-alive reaproveitadas; fica fora do HttpClientService
+    // porque os métodos devolvem o Response JAX-RS que os resources repassam ao chamador
     private final Client client = ClientBuilder.newClient();
 
     // --- Métodos Auxiliares para Requisições HTTP ---
@@ -44,11 +58,20 @@ public class SupabaseService {
      * Envia uma requisição HTTP genérica (GET, POST, PATCH, DELETE) com a chave de role de serviço.
      */
     private Response sendRequest(String method, String url, String jsonBody) {
+        return sendRequest(method, url, jsonBody, null);
+    }
+
+    /**
+     * Mesmo que {@link #sendRequest(String, String, String)}, com o cabeçalho Prefer do PostgREST
+     * (por exemplo "return=representation" para receber as linhas gravadas).
+     */
+    private Response sendRequest(String method, String url, String jsonBody, String prefer) {
         try {
             return client.target(url)
                     .request(MediaType.APPLICATION_JSON)
                     .header("apikey", supabaseServiceRoleKey)
                     .header("Authorization", "Bearer " + supabaseServiceRoleKey)
+                    .header("Prefer", prefer)
                     .method(method, jsonBody != null ? Entity.json(jsonBody) : null);
         } catch (Exception e) {
             LOGGER.severe("Erro ao enviar " + method + " para " + url + ": " + e.getMessage());
@@ -118,6 +141,8 @@ public class SupabaseService {
     // --- Métodos Públicos ---
 
     // Company
+    @CacheInvalidateAll(cacheName = COMPANY_BY_URL_CACHE)
+    @CacheInvalidateAll(cacheName = PROJECT_PAT_CACHE)
     public Response createCompany(String json) {
         return sendRequest("POST", supabaseUrl + "/rest/v1/companies", json);
     }
@@ -131,14 +156,19 @@ public class SupabaseService {
         return getFirst(sendGetRequest(supabaseUrl + "/rest/v1/companies?id=eq." + id));
     }
 
+    @CacheResult(cacheName = COMPANY_BY_URL_CACHE)
     public JsonObject getCompanyByURL(String url) {
         return getFirst(sendGetRequest(supabaseUrl + "/rest/v1/companies?url=eq." + url));
     }
 
+    @CacheInvalidateAll(cacheName = COMPANY_BY_URL_CACHE)
+    @CacheInvalidateAll(cacheName = PROJECT_PAT_CACHE)
     public Response updateCompany(Long id, String json) {
         return sendRequest("PATCH", supabaseUrl + "/rest/v1/companies?id=eq." + id, json);
     }
 
+    @CacheInvalidateAll(cacheName = COMPANY_BY_URL_CACHE)
+    @CacheInvalidateAll(cacheName = PROJECT_PAT_CACHE)
     public Response deleteCompany(Long id) {
         return sendRequest("DELETE", supabaseUrl + "/rest/v1/companies?id=eq." + id, null);
     }
@@ -165,10 +195,12 @@ public class SupabaseService {
         return getFirst(sendGetRequest(supabaseUrl + "/rest/v1/users?username=eq." + username));
     }
 
+    @CacheInvalidateAll(cacheName = PROJECT_PAT_CACHE)
     public Response updateUser(Long id, String json) {
         return sendRequest("PATCH", supabaseUrl + "/rest/v1/users?id=eq." + id, json);
     }
 
+    @CacheInvalidateAll(cacheName = PROJECT_PAT_CACHE)
     public Response deleteUser(Long id) {
         return sendRequest("DELETE", supabaseUrl + "/rest/v1/users?id=eq." + id, null);
     }
@@ -186,6 +218,29 @@ public class SupabaseService {
         return toList(sendGetRequest(supabaseUrl + "/rest/v1/messages?id_workitem=eq." + id + "&order=id"));
     }
 
+    /**
+     * Salva a mensagem e retorna a linha gravada (com o id gerado), ou null em caso de falha.
+     */
+    public JsonObject saveMessageReturning(String json) {
+        Response response = sendRequest("POST", supabaseUrl + "/rest/v1/messages", json, "return=representation");
+        if (response.getStatus() != Response.Status.CREATED.getStatusCode()) {
+            log.error("Falha ao salvar mensagem no Supabase. Status: " + response.getStatus() + ", Erro: " + response.readEntity(String.class));
+            return null;
+        }
+        try (JsonReader reader = Json.createReader(new StringReader(response.readEntity(String.class)))) {
+            JsonStructure row = reader.read();
+            return row.getValueType() == JsonValue.ValueType.ARRAY
+                    ? getFirst((JsonArray) row)
+                    : (JsonObject) row;
+        }
+    }
+
+    // Mensagens do work item com id maior que afterId (somente o que ainda não foi baixado)
+    public List<JsonObject> getMessagesByWorkItemIdAfter(String id, long afterId) {
+        return toList(sendGetRequest(supabaseUrl + "/rest/v1/messages?id_workitem=eq." + id + "&id=gt." + afterId + "&order=id"));
+    }
+
+    @CacheResult(cacheName = PROJECT_PAT_CACHE)
     public JsonObject getPatAndUrlFromUser(String key, String baseUrl) {
         return getFirst(sendGetRequest(supabaseUrl + "/rest/v1/project_pat_view?project_key=eq." + key + "&url=eq." + baseUrl));
     }
@@ -225,6 +280,8 @@ public class SupabaseService {
     }
 
     // --- Métodos CRUD para Projetos ---
+    @CacheInvalidateAll(cacheName = PROJECT_BY_KEY_CACHE)
+    @CacheInvalidateAll(cacheName = PROJECT_PAT_CACHE)
     public Response createProject(String json) {
         return sendRequest("POST", supabaseUrl + "/rest/v1/project", json);
     }
@@ -237,14 +294,19 @@ public class SupabaseService {
         return getFirst(sendGetRequest(supabaseUrl + "/rest/v1/project?id=eq." + id));
     }
 
+    @CacheResult(cacheName = PROJECT_BY_KEY_CACHE)
     public JsonObject getProjectByCompanyIdAndKey(Long companyId, String key) {
         return getFirst(sendGetRequest(supabaseUrl + "/rest/v1/project?key=eq." + key + "&company_id=eq." + companyId));
     }
 
+    @CacheInvalidateAll(cacheName = PROJECT_BY_KEY_CACHE)
+    @CacheInvalidateAll(cacheName = PROJECT_PAT_CACHE)
     public Response updateProject(Long id, String json) {
         return sendRequest("PATCH", supabaseUrl + "/rest/v1/project?id=eq." + id, json);
     }
 
+    @CacheInvalidateAll(cacheName = PROJECT_BY_KEY_CACHE)
+    @CacheInvalidateAll(cacheName = PROJECT_PAT_CACHE)
     public Response deleteProject(Long id) {
         return sendRequest("DELETE", supabaseUrl + "/rest/v1/project?id=eq." + id, null);
     }
@@ -275,31 +337,45 @@ public class SupabaseService {
         return sendRequest("DELETE", supabaseUrl + "/rest/v1/message_processing?id=eq." + id, null);
     }
 
-    // --- MÉTODO PARA RESUMO DE TOKENS (Revertido para Bloqueante) ---
+    // --- Rollups de uso de tokens ---
+
+    /**
+     * Linha da tabela 'token_usage_rollups' para a chave informada, ou null se não existir.
+     */
+    public JsonObject getTokenUsageRollup(long companyId, long projectId, String day, String sender) {
+        return getFirst(sendGetRequest(supabaseUrl + "/rest/v1/token_usage_rollups?company_id=eq." + companyId
+                + "&project_id=eq." + projectId + "&day=eq." + day + "&sender=eq." + sender));
+    }
+
     /**
-     * Busca dados de mensagens para sumarização de tokens.
-     * Inclui company_id, project_id, created_at e message.
-     *
-     * @param companyId Opcional. Filtra por ID da empresa.
-     * @param projectId Opcional. Filtra por ID do projeto.
-     * @return Uma lista de JsonObjects contendo os dados das mensagens.
+     * Indica se a tabela 'token_usage_rollups' já tem alguma linha.
      */
-    public List<JsonObject> getMessagesForTokenSummary(Long companyId, Long projectId) {
-        StringBuilder urlBuilder = new StringBuilder(supabaseUrl + "/rest/v1/messages?select=company_id,project_id,created_at,message");
+    public boolean hasTokenUsageRollups() {
+        return getFirst(sendGetRequest(supabaseUrl + "/rest/v1/token_usage_rollups?select=company_id&limit=1")) != null;
+    }
 
-        if (companyId != null) {
-            urlBuilder.append("&company_id=eq.").append(companyId);
-        }
-        if (projectId != null) {
-            urlBuilder.append("&project_id=eq.").append(projectId);
+    /**
+     * Grava os totais em lote, substituindo as linhas existentes com a mesma chave
+     * (company_id, project_id, day, sender).
+     * @return true se o Supabase confirmou a gravação.
+     */
+    public boolean upsertTokenUsageRollups(List<JsonObject> rows) {
+        JsonArrayBuilder array = Json.createArrayBuilder();
+        rows.forEach(array::add);
+
+        Response response = sendRequest("POST", supabaseUrl + "/rest/v1/token_usage_rollups?on_conflict=company_id,project_id,day,sender",
+                array.build().toString(), "resolution=merge-duplicates");
+        if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+            log.error("Falha ao gravar rollups de tokens no Supabase. Status: " + response.getStatus() + ", Erro: " + response.readEntity(String.class));
+            return false;
         }
-        urlBuilder.append("&order=created_at.asc"); // Ordena por data para facilitar o processamento no frontend
-
-        return toList(sendGetRequest(urlBuilder.toString()));
+        return true;
     }
 
     /**
      * Salva um registro de log na tabela 'logs' do Supabase.
+     * O registro é enfileirado no {@link LogShipper} e gravado em lote em segundo plano,
+     * sem adicionar uma chamada ao Supabase na thread da requisição.
      * @param level O nível do log (ex: INFO, WARN, ERROR).
      * @param message A mensagem do log.
      * @param context Um JsonObject opcional para dados de contexto adicionais.
@@ -316,23 +392,23 @@ public class SupabaseService {
             logEntryBuilder.add("context", context);
         }
 
-        try {
-            Response response = sendRequest("POST", supabaseUrl + "/rest/v1/logs", logEntryBuilder.build().toString());
-            if (response.getStatus() != 201) {
-                log.error("Falha ao salvar log no Supabase. Status: " + response.getStatus() + ", Erro: " + response.readEntity(String.class));
-            }
-        } catch (Exception e) {
-            log.error("Exceção ao tentar salvar log no Supabase: " + e.getMessage(), e);
-        }
+        logShipper.offer(logEntryBuilder.build());
     }
 
     /**
-     * Busca os logs da tabela 'logs' do Supabase.
-     * @param limit O número máximo de logs a serem retornados.
-     * @return Uma lista de JsonObjects representando os logs.
+     * Grava um lote de registros de log com um único POST (array de linhas).
+     * @param entries Os registros de log.
+     * @return true se o Supabase confirmou a gravação.
      */
-    public List<JsonObject> getLogs(int limit) {
-        String query = supabaseUrl + "/rest/v1/logs?order=timestamp.desc&limit=" + limit;
-        return toList(sendGetRequest(query));
+    public boolean saveLogs(List<JsonObject> entries) {
+        JsonArrayBuilder rows = Json.createArrayBuilder();
+        entries.forEach(rows::add);
+
+        Response response = sendRequest("POST", supabaseUrl + "/rest/v1/logs", rows.build().toString());
+        if (response.getStatus() != 201) {
+            log.error("Falha ao salvar logs no Supabase. Status: " + response.getStatus() + ", Erro: " + response.readEntity(String.class));
+            return false;
+        }
+        return true;
     }
 }
@@ -0,0 +1,244 @@
+package mvp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.JsonObject;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Criação em lote das tarefas geradas na etapa final do fluxo.
+ *
+ * As credenciais são resolvidas uma única vez por publicação e as tarefas vão em lotes: no Jira
+ * pelo {@code /rest/api/3/issue/bulk} (até 50 por requisição) e no Azure DevOps pelo
+ * {@code _apis/wit/$batch} (até 200 por requisição). O resultado é informado por tarefa,
+ * na mesma ordem dos payloads recebidos.
+ */
+@ApplicationScoped
+public class TaskPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskPublisher.class);
+
+    // Limites das APIs de criação em lote
+    private static final int JIRA_BULK_LIMIT = 50;
+    private static final int AZURE_BATCH_LIMIT = 200;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @ConfigProperty(name = "azure.devops.organization")
+    String organization;
+
+    @ConfigProperty(name = "azure.devops.project")
+    String project;
+
+    @ConfigProperty(name = "azure.devops.pat")
+    String azurePat;
+
+    @Inject
+    OutboundRateLimiter rateLimiter;
+
+    @Inject
+    SupabaseService supabaseService;
+
+    /**
+     * Resultado da criação de uma tarefa: a chave (Jira) ou o id (Azure DevOps) criado, ou o erro.
+     */
+    public record TaskResult(int index, boolean created, String reference, String error) {
+
+        static TaskResult created(int index, String reference) {
+            return new TaskResult(index, true, reference, null);
+        }
+
+        static TaskResult failed(int index, String error) {
+            return new TaskResult(index, false, null, error);
+        }
+    }
+
+    /**
+     * Cria as issues no Jira. Cada payload é o corpo de um POST /rest/api/3/issue ({"fields": ...}).
+     */
+    public List<TaskResult> publishToJira(List<String> payloads, String projectKey, String url) {
+        List<TaskResult> results = new ArrayList<>();
+        if (payloads.isEmpty()) {
+            return results;
+        }
+
+        JsonObject credentials = supabaseService.getPatAndUrlFromUser(projectKey, url);
+        if (credentials == null) {
+            for (int i = 0; i < payloads.size(); i++) {
+                results.add(TaskResult.failed(i, "Credenciais do Jira não encontradas para o projeto " + projectKey));
+            }
+            return report("Jira", results);
+        }
+        String auth = credentials.getString("email") + ":" + credentials.getString("pat_token");
+        String authHeader = "Basic " + Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
+
+        for (int start = 0; start < payloads.size(); start += JIRA_BULK_LIMIT) {
+            List<String> chunk = payloads.subList(start, Math.min(start + JIRA_BULK_LIMIT, payloads.size()));
+            results.addAll(jiraBulk(chunk, start, url, authHeader));
+        }
+        return report("Jira", results);
+    }
+
+    private List<TaskResult> jiraBulk(List<String> chunk, int offset, String url, String authHeader) {
+        List<TaskResult> results = new ArrayList<>();
+        // Posição de cada issue enviada no lote -> índice original
+        List<Integer> sent = new ArrayList<>();
+        ArrayNode issueUpdates = MAPPER.createArrayNode();
+        for (int i = 0; i < chunk.size(); i++) {
+            try {
+                issueUpdates.add(MAPPER.readTree(chunk.get(i)));
+                sent.add(offset + i);
+            } catch (Exception e) {
+                results.add(TaskResult.failed(offset + i, "Payload inválido: " + e.getMessage()));
+            }
+        }
+        if (sent.isEmpty()) {
+            return results;
+        }
+
+        HttpPost request = new HttpPost(url + "/rest/api/3/issue/bulk");
+        request.setHeader("Authorization", authHeader);
+        request.setHeader("Content-Type", "application/json");
+        request.setEntity(new StringEntity(MAPPER.createObjectNode().set("issueUpdates", issueUpdates).toString(), StandardCharsets.UTF_8));
+
+        try (CloseableHttpResponse response = rateLimiter.execute(request)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            String body = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+            JsonNode json = body.isBlank() ? MAPPER.createObjectNode() : MAPPER.readTree(body);
+
+            // 201 com todas criadas; 400 pode trazer criações parciais junto com os erros
+            if (statusCode != 201 && !json.has("issues")) {
+                sent.forEach(index -> results.add(TaskResult.failed(index, "Status " + statusCode + ": " + body)));
+                return results;
+            }
+
+            // As issues criadas voltam na ordem de envio, sem as que falharam
+            List<Integer> failedPositions = new ArrayList<>();
+            for (JsonNode error : json.path("errors")) {
+                int position = error.path("failedElementNumber").asInt(-1);
+                if (position >= 0 && position < sent.size()) {
+                    failedPositions.add(position);
+                    results.add(TaskResult.failed(sent.get(position), error.path("elementErrors").toString()));
+                }
+            }
+            int created = 0;
+            JsonNode issues = json.path("issues");
+            for (int position = 0; position < sent.size(); position++) {
+                if (failedPositions.contains(position)) {
+                    continue;
+                }
+                JsonNode issue = issues.path(created++);
+                results.add(issue.isMissingNode()
+                        ? TaskResult.failed(sent.get(position), "Sem confirmação do Jira")
+                        : TaskResult.created(sent.get(position), issue.path("key").asText()));
+            }
+        } catch (Exception e) {
+            logger.error("Erro ao criar issues em lote no Jira: " + e.getMessage());
+            sent.forEach(index -> results.add(TaskResult.failed(index, e.getMessage())));
+        }
+        return results;
+    }
+
+    /**
+     * Cria os work items no Azure DevOps. Cada payload é o JSON Patch de um POST
+     * _apis/wit/workitems/${type}.
+     */
+    public List<TaskResult> publishToAzure(List<String> payloads, String type) {
+        List<TaskResult> results = new ArrayList<>();
+        String authHeader = "Basic " + Base64.getEncoder().encodeToString((":" + azurePat).getBytes(StandardCharsets.UTF_8));
+
+        for (int start = 0; start < payloads.size(); start += AZURE_BATCH_LIMIT) {
+            List<String> chunk = payloads.subList(start, Math.min(start + AZURE_BATCH_LIMIT, payloads.size()));
+            results.addAll(azureBatch(chunk, start, type, authHeader));
+        }
+        return report("Azure DevOps", results);
+    }
+
+    private List<TaskResult> azureBatch(List<String> chunk, int offset, String type, String authHeader) {
+        List<TaskResult> results = new ArrayList<>();
+        List<Integer> sent = new ArrayList<>();
+        ArrayNode batch = MAPPER.createArrayNode();
+        for (int i = 0; i < chunk.size(); i++) {
+            try {
+                ObjectNode item = MAPPER.createObjectNode()
+                        .put("method", "PATCH")
+                        .put("uri", "/" + project + "/_apis/wit/workitems/$" + type + "?api-version=4.1");
+                item.putObject("headers").put("Content-Type", "application/json-patch+json");
+                item.set("body", MAPPER.readTree(chunk.get(i)));
+                batch.add(item);
+                sent.add(offset + i);
+            } catch (Exception e) {
+                results.add(TaskResult.failed(offset + i, "Payload inválido: " + e.getMessage()));
+            }
+        }
+        if (sent.isEmpty()) {
+            return results;
+        }
+
+        HttpPost request = new HttpPost("https://dev.azure.com/" + organization + "/_apis/wit/$batch?api-version=4.1");
+        request.setHeader("Authorization", authHeader);
+        request.setHeader("Content-Type", "application/json");
+        request.setEntity(new StringEntity(batch.toString(), StandardCharsets.UTF_8));
+
+        try (CloseableHttpResponse response = rateLimiter.execute(request)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            String body = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+            if (statusCode != 200) {
+                sent.forEach(index -> results.add(TaskResult.failed(index, "Status " + statusCode + ": " + body)));
+                return results;
+            }
+
+            // Uma resposta por item, na ordem de envio; o corpo de cada uma vem como string JSON
+            JsonNode values = MAPPER.readTree(body).path("value");
+            for (int position = 0; position < sent.size(); position++) {
+                JsonNode value = values.path(position);
+                int code = value.path("code").asInt();
+                String itemBody = value.path("body").asText("");
+                if (code == 200 || code == 201) {
+                    results.add(TaskResult.created(sent.get(position), idOf(itemBody)));
+                } else {
+                    results.add(TaskResult.failed(sent.get(position), value.isMissingNode()
+                            ? "Sem confirmação do Azure DevOps"
+                            : "Status " + code + ": " + itemBody));
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Erro ao criar work items em lote no Azure DevOps: " + e.getMessage());
+            sent.forEach(index -> results.add(TaskResult.failed(index, e.getMessage())));
+        }
+        return results;
+    }
+
+    private static String idOf(String workItem) {
+        try {
+            return MAPPER.readTree(workItem).path("id").asText();
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    private static List<TaskResult> report(String platform, List<TaskResult> results) {
+        results.sort((a, b) -> Integer.compare(a.index(), b.index()));
+        long created = results.stream().filter(TaskResult::created).count();
+        logger.info("{}: {} de {} tarefas criadas", platform, created, results.size());
+        results.stream()
+                .filter(result -> !result.created())
+                .forEach(result -> logger.warn("{}: falha ao criar a tarefa {}: {}", platform, result.index(), result.error()));
+        return results;
+    }
+}
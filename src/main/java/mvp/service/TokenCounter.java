@@ -0,0 +1,83 @@
+package mvp.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Contagem aproximada de tokens feita localmente, sem chamar o Ollama.
+ *
+ * Segue o comportamento típico dos tokenizadores BPE do llama/codellama: sequências de letras
+ * e dígitos rendem cerca de um token a cada 4 caracteres, e cada símbolo ou pontuação é um token.
+ * A contagem das linhas da tabela 'messages' fica em cache pelo id, já que o conteúdo não muda.
+ */
+@ApplicationScoped
+public class TokenCounter {
+
+    // Custo fixo de cada mensagem no template de chat (papel e delimitadores)
+    public static final int MESSAGE_OVERHEAD = 4;
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    @ConfigProperty(name = "context-window.token-cache-size", defaultValue = "20000")
+    int cacheSize;
+
+    private final LinkedHashMap<Long, Integer> counts = new LinkedHashMap<>(1024, 0.75f, true);
+
+    /**
+     * Tokens da linha da tabela 'messages' (campo message), incluindo o custo fixo da mensagem.
+     */
+    public int count(JsonObject row) {
+        JsonValue id = row.get("id");
+        if (id == null || id.getValueType() != JsonValue.ValueType.NUMBER) {
+            return MESSAGE_OVERHEAD + count(row.getString("message", ""));
+        }
+
+        long key = row.getJsonNumber("id").longValue();
+        synchronized (counts) {
+            Integer cached = counts.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        int tokens = MESSAGE_OVERHEAD + count(row.getString("message", ""));
+        synchronized (counts) {
+            counts.put(key, tokens);
+            var it = counts.entrySet().iterator();
+            while (counts.size() > cacheSize && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Tokens aproximados do texto.
+     */
+    public int count(String text) {
+        int tokens = 0;
+        int run = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                run++;
+                continue;
+            }
+            tokens += wordTokens(run);
+            run = 0;
+            if (c == '\n' || !Character.isWhitespace(c)) {
+                tokens++;
+            }
+        }
+        return tokens + wordTokens(run);
+    }
+
+    private static int wordTokens(int length) {
+        return (length + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+}
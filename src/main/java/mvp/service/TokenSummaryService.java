@@ -0,0 +1,121 @@
+package mvp.service;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.JsonObject;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Resumo de uso de tokens das mensagens, calculado no servidor.
+ *
+ * Responde a partir dos rollups por empresa, projeto, dia e remetente
+ * ({@link TokenUsageRollups}): a tabela 'token_usage_rollups' mais os totais ainda não gravados
+ * que estão em memória. O custo depende do número de dias e projetos no período, não do
+ * volume de mensagens.
+ */
+@ApplicationScoped
+public class TokenSummaryService {
+
+    public enum Granularity { DAY, WEEK }
+
+    @Inject
+    ReactiveSupabaseService supabaseService;
+
+    @Inject
+    TokenUsageRollups rollups;
+
+    private static final class Totals {
+        long tokens;
+        long messages;
+
+        void add(long tokens, long messages) {
+            this.tokens += tokens;
+            this.messages += messages;
+        }
+
+        Map<String, Object> toMap(String keyName, Object key) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put(keyName, key);
+            map.put("tokens", tokens);
+            map.put("messages", messages);
+            return map;
+        }
+    }
+
+    /**
+     * Totais de tokens por período, projeto e remetente.
+     *
+     * @param from Opcional. Data inicial (inclusive).
+     * @param to   Opcional. Data final (inclusive).
+     */
+    public Uni<Map<String, Object>> summarize(Long companyId, Long projectId, LocalDate from, LocalDate to, Granularity granularity) {
+        return supabaseService.getTokenUsageRollups(companyId, projectId,
+                        from != null ? from.toString() : null,
+                        to != null ? to.toString() : null)
+                .map(rows -> {
+                    Map<TokenUsageRollups.Key, TokenUsageRollups.Totals> merged = new HashMap<>();
+                    for (JsonObject row : rows) {
+                        TokenUsageRollups.Key key = new TokenUsageRollups.Key(
+                                row.getJsonNumber("company_id").longValue(),
+                                row.getJsonNumber("project_id").longValue(),
+                                LocalDate.parse(row.getString("day")),
+                                row.getString("sender"));
+                        merged.put(key, new TokenUsageRollups.Totals(
+                                row.getJsonNumber("tokens").longValue(),
+                                row.getJsonNumber("messages").longValue(),
+                                true));
+                    }
+                    // Em memória: total absoluto substitui a linha; sem a leitura do gravado, soma a ela
+                    rollups.snapshot(companyId, projectId, from, to).forEach((key, totals) -> merged.merge(key, totals,
+                            (stored, current) -> current.seeded() ? current : new TokenUsageRollups.Totals(
+                                    stored.tokens() + current.tokens(), stored.messages() + current.messages(), true)));
+                    return toMap(merged, granularity);
+                });
+    }
+
+    private static Map<String, Object> toMap(Map<TokenUsageRollups.Key, TokenUsageRollups.Totals> rollups, Granularity granularity) {
+        Totals total = new Totals();
+        TreeMap<LocalDate, Totals> byPeriod = new TreeMap<>();
+        TreeMap<Long, Totals> byProject = new TreeMap<>();
+        TreeMap<String, Totals> bySender = new TreeMap<>();
+
+        rollups.forEach((key, totals) -> {
+            LocalDate period = granularity == Granularity.WEEK
+                    ? key.day().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+                    : key.day();
+            total.add(totals.tokens(), totals.messages());
+            byPeriod.computeIfAbsent(period, p -> new Totals()).add(totals.tokens(), totals.messages());
+            byProject.computeIfAbsent(key.projectId(), p -> new Totals()).add(totals.tokens(), totals.messages());
+            bySender.computeIfAbsent(key.sender(), s -> new Totals()).add(totals.tokens(), totals.messages());
+        });
+
+        List<Map<String, Object>> periods = new ArrayList<>();
+        byPeriod.forEach((period, totals) -> periods.add(totals.toMap("period", period.toString())));
+
+        // project_id 0 agrupa mensagens sem projeto
+        List<Map<String, Object>> projects = new ArrayList<>();
+        byProject.forEach((project, totals) -> projects.add(totals.toMap("projectId", project > 0 ? project : null)));
+
+        List<Map<String, Object>> senders = new ArrayList<>();
+        bySender.forEach((sender, totals) -> senders.add(totals.toMap("sender", sender)));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("granularity", granularity.name().toLowerCase());
+        result.put("totalTokens", total.tokens);
+        result.put("totalMessages", total.messages);
+        result.put("byPeriod", periods);
+        result.put("byProject", projects);
+        result.put("bySender", senders);
+        return result;
+    }
+}
@@ -0,0 +1,400 @@
+package mvp.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Totais de tokens por empresa, projeto, dia e remetente, mantidos de forma incremental.
+ *
+ * Cada mensagem gravada por {@link mvp.utils.SupabaseUtils} é contada uma única vez e somada ao
+ * total da sua chave em memória. Uma thread de fundo grava os totais alterados na tabela
+ * 'token_usage_rollups' a cada {@code flush-interval-seconds}, com upsert pela chave
+ * (company_id, project_id, day, sender). Antes do primeiro upsert de uma chave o flusher lê o
+ * total já gravado no Supabase e o soma ao acumulado, de modo que o upsert sempre grava o valor
+ * absoluto; a gravação da mensagem nunca espera por essa leitura.
+ *
+ * Mensagens do assistente não trazem empresa e projeto; eles vêm da conversa do work item e são
+ * resolvidos pelo flusher. Mensagens sem projeto identificado entram com project_id 0.
+ *
+ * A tabela é criada por {@code supabase/migrations/*_token_usage_rollups.sql}. Na subida, se ela
+ * estiver vazia, o histórico de 'messages' é carregado em segundo plano com {@link #rebuild()}.
+ */
+@ApplicationScoped
+public class TokenUsageRollups {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenUsageRollups.class);
+
+    @ConfigProperty(name = "token-rollups.flush-interval-seconds", defaultValue = "30")
+    long flushIntervalSeconds;
+
+    // Dias anteriores mantidos em memória após gravados (mensagens de ontem ainda podem chegar)
+    @ConfigProperty(name = "token-rollups.retention-days", defaultValue = "1")
+    int retentionDays;
+
+    // Carga inicial a partir de 'messages' quando a tabela de rollups está vazia
+    @ConfigProperty(name = "token-rollups.backfill-on-start", defaultValue = "true")
+    boolean backfillOnStart;
+
+    @Inject
+    SupabaseService supabaseService;
+
+    @Inject
+    ReactiveSupabaseService reactiveSupabaseService;
+
+    @Inject
+    ConversationCache conversations;
+
+    @Inject
+    TokenCounter tokenCounter;
+
+    @Inject
+    MeterRegistry registry;
+
+    public record Key(long companyId, long projectId, LocalDate day, String sender) {
+    }
+
+    /**
+     * Total da chave. Sem {@code seeded}, o valor é apenas o que foi somado desde a subida,
+     * pois a leitura do total gravado ainda não foi possível.
+     */
+    public record Totals(long tokens, long messages, boolean seeded) {
+    }
+
+    private static final class Counter {
+        long tokens;
+        long messages;
+        boolean seeded;
+        boolean dirty;
+    }
+
+    // Mensagem gravada cuja empresa/projeto ainda precisa ser buscada na conversa
+    private record Unresolved(String workItemId, JsonObject row) {
+    }
+
+    private final ConcurrentHashMap<Key, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Unresolved> unresolved = new ConcurrentLinkedQueue<>();
+    // Mensagens somadas durante um rebuild, por chave: {id, tokens}; null fora de um rebuild
+    private final AtomicReference<Map<Key, List<long[]>>> live = new AtomicReference<>();
+    private volatile boolean running;
+    private Thread flusher;
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("token.rollups.keys", counters, Map::size)
+                .description("Chaves de rollup de tokens em memória")
+                .register(registry);
+
+        running = true;
+        flusher = Thread.ofVirtual().name("token-rollups").start(this::run);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (backfillOnStart) {
+            Thread.ofVirtual().name("token-rollups-backfill").start(this::backfill);
+        }
+    }
+
+    private void backfill() {
+        try {
+            if (supabaseService.hasTokenUsageRollups()) {
+                return;
+            }
+            logger.info("Tabela 'token_usage_rollups' vazia; carregando o histórico de 'messages'");
+            rebuild().await().indefinitely();
+        } catch (Exception e) {
+            logger.warn("Falha na carga inicial dos rollups de tokens: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Soma a mensagem recém-gravada (linha retornada pelo Supabase) ao total da sua chave, sem
+     * acessar o Supabase: respostas do assistente ficam para o flusher identificar a chave.
+     */
+    public void record(String workItemId, JsonObject row) {
+        if (row == null) {
+            return;
+        }
+        long[] owner = owner(row);
+        LocalDate day = day(row);
+        if (owner == null) {
+            unresolved.add(new Unresolved(workItemId, row));
+        } else if (day != null) {
+            add(new Key(owner[0], owner[1], day, row.getString("sender", "unknown")), row);
+        }
+    }
+
+    private void add(Key key, JsonObject row) {
+        int tokens = tokenCounter.count(row.getString("message", ""));
+        Counter counter = counters.computeIfAbsent(key, k -> new Counter());
+        synchronized (counter) {
+            counter.tokens += tokens;
+            counter.messages++;
+            counter.dirty = true;
+            Map<Key, List<long[]>> rebuilding = live.get();
+            if (rebuilding != null) {
+                rebuilding.computeIfAbsent(key, k -> new ArrayList<>()).add(new long[]{id(row), tokens});
+            }
+        }
+    }
+
+    // Identifica empresa e projeto das respostas do assistente pela conversa (pode ir ao Supabase)
+    private void resolvePending() {
+        Unresolved pending;
+        while ((pending = unresolved.poll()) != null) {
+            Key key;
+            try {
+                key = key(pending.row(), pending.workItemId());
+            } catch (Exception e) {
+                logger.warn("Falha ao identificar empresa e projeto do work item " + pending.workItemId() + ": " + e.getMessage());
+                continue;
+            }
+            if (key == null) {
+                logger.warn("Mensagem {} do work item {} sem empresa identificada; fora dos rollups de tokens",
+                        pending.row().get("id"), pending.workItemId());
+                continue;
+            }
+            add(key, pending.row());
+        }
+    }
+
+    /**
+     * Totais em memória das chaves da empresa/projeto no período (filtros nulos são ignorados),
+     * para complementar o que ainda não foi gravado no Supabase.
+     */
+    public Map<Key, Totals> snapshot(Long companyId, Long projectId, LocalDate from, LocalDate to) {
+        Map<Key, Totals> snapshot = new HashMap<>();
+        counters.forEach((key, counter) -> {
+            if ((companyId == null || key.companyId() == companyId)
+                    && (projectId == null || key.projectId() == projectId)
+                    && (from == null || !key.day().isBefore(from))
+                    && (to == null || !key.day().isAfter(to))) {
+                synchronized (counter) {
+                    snapshot.put(key, new Totals(counter.tokens, counter.messages, counter.seeded));
+                }
+            }
+        });
+        return snapshot;
+    }
+
+    /**
+     * Recalcula todos os rollups a partir da tabela 'messages' (carga inicial ou correção).
+     * As mensagens somadas durante o recálculo com id posterior à última lida (a leitura segue a
+     * ordem de id) são reaplicadas sobre o resultado; as demais já estão nele.
+     *
+     * @return O número de chaves gravadas.
+     */
+    public Uni<Integer> rebuild() {
+        if (!live.compareAndSet(null, new ConcurrentHashMap<>())) {
+            return Uni.createFrom().failure(new IllegalStateException("Recálculo dos rollups de tokens já em andamento"));
+        }
+        Map<String, long[]> workItems = new HashMap<>();
+        long[] lastId = {0};
+        return reactiveSupabaseService.streamMessagesForTokenSummary(null, null, null, null)
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .collect().in(HashMap<Key, long[]>::new, (totals, row) -> {
+                    lastId[0] = Math.max(lastId[0], id(row));
+                    // Mensagens em ordem de id: a do usuário, com empresa e projeto, vem antes das respostas
+                    String workItemId = workItemId(row);
+                    long[] owner = owner(row);
+                    if (owner != null && workItemId != null) {
+                        workItems.putIfAbsent(workItemId, owner);
+                    } else if (owner == null && workItemId != null) {
+                        owner = workItems.get(workItemId);
+                    }
+                    LocalDate day = day(row);
+                    if (owner == null || day == null) {
+                        return;
+                    }
+                    Key key = new Key(owner[0], owner[1], day, row.getString("sender", "unknown"));
+                    long[] total = totals.computeIfAbsent(key, k -> new long[2]);
+                    total[0] += tokenCounter.count(row.getString("message", ""));
+                    total[1]++;
+                })
+                .map(totals -> {
+                    synchronized (this) {
+                        // Respostas do assistente ainda sem chave também contam como somas do período
+                        resolvePending();
+                        Map<Key, List<long[]>> rebuilding = live.get();
+                        totals.forEach((key, total) -> {
+                            Counter counter = counters.computeIfAbsent(key, k -> new Counter());
+                            synchronized (counter) {
+                                long tokens = total[0];
+                                long messages = total[1];
+                                for (long[] message : rebuilding.getOrDefault(key, List.of())) {
+                                    if (message[0] > lastId[0]) {
+                                        tokens += message[1];
+                                        messages++;
+                                    }
+                                }
+                                counter.tokens = tokens;
+                                counter.messages = messages;
+                                counter.seeded = true;
+                                counter.dirty = true;
+                            }
+                        });
+                        live.set(null);
+                        flush();
+                    }
+                    logger.info("Rollups de tokens recalculados: {} chaves", totals.size());
+                    return totals.size();
+                })
+                .onFailure().invoke(e -> live.set(null));
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(flushIntervalSeconds));
+            } catch (InterruptedException e) {
+                break;
+            }
+            flush();
+        }
+    }
+
+    synchronized void flush() {
+        resolvePending();
+
+        List<JsonObject> rows = new ArrayList<>();
+        List<Counter> flushed = new ArrayList<>();
+        counters.forEach((key, counter) -> {
+            boolean needsSeed;
+            synchronized (counter) {
+                needsSeed = counter.dirty && !counter.seeded;
+            }
+            // Sem o total gravado, um upsert apagaria o histórico da chave
+            if (needsSeed && !seed(key, counter)) {
+                return;
+            }
+            synchronized (counter) {
+                if (!counter.dirty) {
+                    return;
+                }
+                rows.add(Json.createObjectBuilder()
+                        .add("company_id", key.companyId())
+                        .add("project_id", key.projectId())
+                        .add("day", key.day().toString())
+                        .add("sender", key.sender())
+                        .add("tokens", counter.tokens)
+                        .add("messages", counter.messages)
+                        .build());
+                counter.dirty = false;
+                flushed.add(counter);
+            }
+        });
+
+        if (!rows.isEmpty() && !supabaseService.upsertTokenUsageRollups(rows)) {
+            flushed.forEach(counter -> {
+                synchronized (counter) {
+                    counter.dirty = true;
+                }
+            });
+        }
+
+        // Dias encerrados e já gravados saem da memória
+        LocalDate oldest = LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays);
+        counters.entrySet().removeIf(entry -> {
+            synchronized (entry.getValue()) {
+                return entry.getKey().day().isBefore(oldest) && !entry.getValue().dirty;
+            }
+        });
+    }
+
+    // Soma o total já gravado ao que foi acumulado; a leitura é feita fora do lock do contador
+    private boolean seed(Key key, Counter counter) {
+        JsonObject row;
+        try {
+            row = supabaseService.getTokenUsageRollup(key.companyId(), key.projectId(), key.day().toString(), key.sender());
+        } catch (Exception e) {
+            logger.warn("Falha ao ler o rollup de tokens " + key + ": " + e.getMessage());
+            return false;
+        }
+        synchronized (counter) {
+            // Um rebuild pode ter gravado o valor absoluto enquanto a leitura acontecia
+            if (!counter.seeded && row != null) {
+                counter.tokens += row.getJsonNumber("tokens").longValue();
+                counter.messages += row.getJsonNumber("messages").longValue();
+            }
+            counter.seeded = true;
+        }
+        return true;
+    }
+
+    private Key key(JsonObject row, String workItemId) {
+        LocalDate day = day(row);
+        long[] owner = owner(row);
+        if (owner == null) {
+            // Resposta do assistente: empresa e projeto da mensagem do usuário no mesmo work item
+            owner = conversations.getMessages(workItemId).stream()
+                    .map(TokenUsageRollups::owner)
+                    .filter(o -> o != null)
+                    .findFirst()
+                    .orElse(null);
+        }
+        return owner != null && day != null ? new Key(owner[0], owner[1], day, row.getString("sender", "unknown")) : null;
+    }
+
+    // {company_id, project_id} da linha, ou null sem empresa
+    private static long[] owner(JsonObject row) {
+        JsonValue company = row.get("company_id");
+        if (!(company instanceof JsonNumber companyId)) {
+            return null;
+        }
+        JsonValue project = row.get("project_id");
+        return new long[]{companyId.longValue(), project instanceof JsonNumber projectId ? projectId.longValue() : 0L};
+    }
+
+    private static String workItemId(JsonObject row) {
+        JsonValue id = row.get("id_workitem");
+        if (id == null || id.getValueType() == JsonValue.ValueType.NULL) {
+            return null;
+        }
+        return id instanceof JsonString text ? text.getString() : id.toString();
+    }
+
+    // Sem id a mensagem é tratada como posterior a todas as lidas pelo rebuild
+    private static long id(JsonObject row) {
+        return row.get("id") instanceof JsonNumber id ? id.longValue() : Long.MAX_VALUE;
+    }
+
+    private static LocalDate day(JsonObject row) {
+        String createdAt = row.getString("created_at", "");
+        return createdAt.length() >= 10 ? LocalDate.parse(createdAt.substring(0, 10)) : null;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+        }
+        flush();
+    }
+}
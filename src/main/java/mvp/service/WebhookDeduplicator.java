@@ -0,0 +1,266 @@
+package mvp.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Descarta entregas repetidas de webhooks do Jira antes de qualquer acesso ao Supabase ou ao Ollama.
+ *
+ * Cada entrega gera até duas chaves: o identificador da entrega (header
+ * {@code X-Atlassian-Webhook-Identifier}, igual nas retentativas do Jira) e o conteúdo (id do
+ * comentário ou chave da issue mais o SHA-256 do texto), que pega os disparos duplicados de edições
+ * rápidas. Se qualquer uma já foi vista dentro de {@code window-seconds} a entrega é ignorada.
+ * O conjunto é limitado a {@code max-entries} e, com {@code file} configurado, é gravado em disco
+ * periodicamente e recarregado na subida.
+ */
+@ApplicationScoped
+public class WebhookDeduplicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookDeduplicator.class);
+
+    @ConfigProperty(name = "webhook.dedup.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "webhook.dedup.window-seconds", defaultValue = "600")
+    long windowSeconds;
+
+    @ConfigProperty(name = "webhook.dedup.max-entries", defaultValue = "10000")
+    int maxEntries;
+
+    // Arquivo para persistir as chaves vistas; sem valor o conjunto fica só em memória
+    @ConfigProperty(name = "webhook.dedup.file")
+    Optional<String> file;
+
+    @ConfigProperty(name = "webhook.dedup.persist-interval-seconds", defaultValue = "5")
+    long persistIntervalSeconds;
+
+    @Inject
+    MeterRegistry registry;
+
+    // Chave -> instante (ms) em que foi vista, em ordem de inserção
+    private final LinkedHashMap<String, Long> seen = new LinkedHashMap<>();
+
+    private Path path;
+    private volatile boolean dirty;
+    private volatile boolean running;
+    private Thread persister;
+
+    @PostConstruct
+    void init() {
+        if (enabled && file.isPresent()) {
+            path = Path.of(file.get());
+            load();
+            running = true;
+            persister = Thread.ofVirtual().name("webhook-dedup").start(this::run);
+        }
+
+        Gauge.builder("webhook.dedup.size", this, dedup -> dedup.size())
+                .description("Chaves de webhooks mantidas para deduplicação")
+                .register(registry);
+    }
+
+    /**
+     * Registra a entrega e retorna {@code false} se ela (ou o mesmo conteúdo) já foi recebida
+     * dentro da janela.
+     */
+    public boolean firstDelivery(String type, String deliveryId, JsonObject json) {
+        if (!enabled) {
+            return true;
+        }
+        List<String> keys = keys(type, deliveryId, json);
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            evict(now);
+            for (String key : keys) {
+                if (seen.containsKey(key)) {
+                    registry.counter("webhook.dedup.dropped", "type", type).increment();
+                    return false;
+                }
+            }
+            keys.forEach(key -> seen.put(key, now));
+            dirty = true;
+        }
+        return true;
+    }
+
+    /**
+     * Desfaz o registro de uma entrega que não chegou a ser aceita (ex.: recusada por falta de
+     * capacidade), para que a retentativa do Jira seja processada.
+     */
+    public void forget(String type, String deliveryId, JsonObject json) {
+        if (!enabled) {
+            return;
+        }
+        List<String> keys = keys(type, deliveryId, json);
+        synchronized (this) {
+            keys.forEach(seen::remove);
+            dirty = true;
+        }
+    }
+
+    static List<String> keys(String type, String deliveryId, JsonObject json) {
+        List<String> keys = new ArrayList<>(2);
+        if (deliveryId != null && !deliveryId.isBlank()) {
+            keys.add("delivery:" + deliveryId.trim());
+        }
+
+        JsonObject issue = object(json, "issue");
+        String issueKey = issue != null ? issue.getString("key", "") : "";
+        JsonObject comment = object(json, "comment");
+        if (comment != null) {
+            String commentId = comment.containsKey("id") ? comment.get("id").toString() : "";
+            keys.add(type + ":" + issueKey + ":" + commentId + ":" + hash(text(comment, "body")));
+        } else if (issue != null) {
+            JsonObject fields = object(issue, "fields");
+            String summary = fields != null ? text(fields, "summary") : "";
+            String description = fields != null ? text(fields, "description") : "";
+            keys.add(type + ":" + issueKey + ":" + hash(summary, description));
+        }
+        return keys;
+    }
+
+    private static JsonObject object(JsonObject json, String field) {
+        JsonValue value = json.get(field);
+        return value != null && value.getValueType() == JsonValue.ValueType.OBJECT ? value.asJsonObject() : null;
+    }
+
+    // Texto simples ou, no formato ADF da API v3, o documento serializado
+    private static String text(JsonObject json, String field) {
+        JsonValue value = json.get(field);
+        if (value == null || value.getValueType() == JsonValue.ValueType.NULL) {
+            return "";
+        }
+        return value.getValueType() == JsonValue.ValueType.STRING ? json.getString(field) : value.toString();
+    }
+
+    // Separador nulo evita colisões entre campos concatenados
+    private static String hash(String... values) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String value : values) {
+                digest.update(value.trim().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Deve ser chamado com o lock; as chaves mais antigas ficam no início
+    private void evict(long now) {
+        long cutoff = now - TimeUnit.SECONDS.toMillis(windowSeconds);
+        var it = seen.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            if (entry.getValue() >= cutoff && seen.size() <= maxEntries) {
+                break;
+            }
+            it.remove();
+            dirty = true;
+        }
+    }
+
+    private synchronized int size() {
+        return seen.size();
+    }
+
+    private void run() {
+        while (running) {
+            LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(persistIntervalSeconds));
+            persist();
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(path)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            synchronized (this) {
+                for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                    int tab = line.indexOf('\t');
+                    if (tab > 0) {
+                        seen.put(line.substring(tab + 1), Long.parseLong(line.substring(0, tab)));
+                    }
+                }
+                evict(now);
+            }
+            logger.info("Deduplicação de webhooks: {} chaves carregadas de {}", size(), path);
+        } catch (IOException | NumberFormatException e) {
+            logger.warn("Falha ao carregar as chaves de deduplicação de " + path + ": " + e.getMessage());
+        }
+    }
+
+    // Grava um snapshot completo e troca o arquivo de uma vez
+    private void persist() {
+        if (!dirty) {
+            return;
+        }
+        List<Map.Entry<String, Long>> snapshot;
+        synchronized (this) {
+            evict(System.currentTimeMillis());
+            snapshot = seen.entrySet().stream().map(entry -> Map.entry(entry.getKey(), entry.getValue())).toList();
+            dirty = false;
+        }
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Long> entry : snapshot) {
+                    writer.write(entry.getValue() + "\t" + entry.getKey());
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            logger.warn("Falha ao gravar as chaves de deduplicação em " + path + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (persister == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(persister);
+        try {
+            persister.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        persist();
+    }
+}
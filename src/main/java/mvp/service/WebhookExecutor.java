@@ -0,0 +1,277 @@
+package mvp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import mvp.exception.WebhookRejectedException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor dedicado ao processamento de webhooks.
+ * Cada tarefa roda em uma virtual thread, mas apenas {@code max-concurrency} executam ao mesmo tempo
+ * e no máximo {@code queue-capacity} ficam aguardando. O limite do Ollama fica no
+ * {@link OllamaScheduler}: {@code max-concurrency} é bem maior que o max-in-flight dele, para que as
+ * empresas disputem a fila justa do scheduler e não a ordem de chegada desta fila.
+ * Tarefas com a mesma lane (a chave da issue) são serializadas: uma única virtual thread por lane
+ * as executa em ordem, sem lock global, enquanto issues diferentes rodam em paralelo.
+ *
+ * Cada tarefa pertence a um tenant (a instância do Jira, que identifica a empresa). Um tenant
+ * executa no máximo {@code tenant-share} de {@code max-concurrency} tarefas ao mesmo tempo e, nos
+ * agendamentos sem espera, ocupa no máximo essa fração das vagas; acima disso só ele é recusado.
+ */
+@ApplicationScoped
+public class WebhookExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookExecutor.class);
+
+    @ConfigProperty(name = "webhook.executor.max-concurrency", defaultValue = "64")
+    int maxConcurrency;
+
+    @ConfigProperty(name = "webhook.executor.queue-capacity", defaultValue = "200")
+    int queueCapacity;
+
+    // Fração das vagas e das execuções que um único tenant pode ocupar
+    @ConfigProperty(name = "webhook.executor.tenant-share", defaultValue = "0.5")
+    double tenantShare;
+
+    @Inject
+    MeterRegistry registry;
+
+    private ExecutorService executor;
+    private Semaphore running;   // tarefas em execução
+    private Semaphore admitted;  // tarefas em execução + aguardando na fila
+    private Counter rejected;
+
+    // Lane -> tarefas aguardando a que está em execução; a lane existe enquanto tiver trabalho
+    private final Map<String, ArrayDeque<Task>> lanes = new HashMap<>();
+    // Tenant -> vagas ocupadas (em execução + aguardando); o tenant existe enquanto tiver vagas
+    private final Map<String, Integer> tenantAdmitted = new HashMap<>();
+    // Tenant -> execuções simultâneas permitidas; um por instância do Jira, poucos na prática
+    private final Map<String, Semaphore> tenantRunning = new ConcurrentHashMap<>();
+
+    private record Task(String tenant, Runnable body) {
+    }
+
+    @PostConstruct
+    void init() {
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("webhook-", 0).factory());
+        running = new Semaphore(maxConcurrency, true);
+        admitted = new Semaphore(maxConcurrency + queueCapacity);
+
+        Gauge.builder("webhook.executor.active", running, s -> maxConcurrency - s.availablePermits())
+                .description("Webhooks em processamento")
+                .register(registry);
+        Gauge.builder("webhook.executor.queued", this, e -> e.queued())
+                .description("Webhooks aguardando processamento")
+                .register(registry);
+        Gauge.builder("webhook.executor.lanes", this, e -> e.activeLanes())
+                .description("Issues com webhooks em processamento ou aguardando")
+                .register(registry);
+        rejected = Counter.builder("webhook.executor.rejected")
+                .description("Webhooks recusados por falta de capacidade")
+                .register(registry);
+    }
+
+    /**
+     * Agenda a tarefa sem bloquear. Se a fila estiver cheia lança {@link WebhookRejectedException},
+     * que é convertida em 429/503 para que o Jira reenvie o webhook mais tarde.
+     */
+    public void submit(Runnable task) {
+        submit(null, null, task);
+    }
+
+    /**
+     * Como {@link #submit(Runnable)}, mas as tarefas de uma mesma {@code lane} (ex.: a chave da
+     * issue) rodam uma de cada vez, na ordem em que chegaram; lanes diferentes seguem em paralelo.
+     * {@code tenant} nulo usa o tenant padrão.
+     */
+    public void submit(String lane, String tenant, Runnable task) {
+        reserve(tenant);
+        start(lane, new Task(tenant(tenant), task));
+    }
+
+    /**
+     * Reserva uma vaga na fila sem agendar nada ainda (ex.: comentário aguardando a janela de
+     * agrupamento). Lança {@link WebhookRejectedException} se a fila estiver cheia ou se o tenant
+     * já ocupa a sua parte dela.
+     */
+    public void reserve(String tenant) {
+        String id = tenant(tenant);
+        synchronized (tenantAdmitted) {
+            int limit = share(maxConcurrency + queueCapacity);
+            if (tenantAdmitted.getOrDefault(id, 0) >= limit) {
+                rejected.increment();
+                logger.warn("Tenant {} com {} webhooks na fila, o limite dele", id, limit);
+                throw new WebhookRejectedException("Capacidade de processamento de webhooks esgotada para " + id);
+            }
+            if (!admitted.tryAcquire()) {
+                rejected.increment();
+                logger.warn("Fila de webhooks cheia ({} em execução, {} aguardando)", maxConcurrency, queueCapacity);
+                throw new WebhookRejectedException("Capacidade de processamento de webhooks esgotada");
+            }
+            tenantAdmitted.merge(id, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Reserva uma vaga aguardando, se necessário, até haver espaço na fila. Não aplica a parte do
+     * tenant: quem espera (o journal) entrega em ordem de chegada, e a justiça entre tenants fica
+     * no limite de execuções e no {@link OllamaScheduler}.
+     */
+    public void reserveAndWait(String tenant) throws InterruptedException {
+        admitted.acquire();
+        synchronized (tenantAdmitted) {
+            tenantAdmitted.merge(tenant(tenant), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Devolve vagas reservadas que não serão usadas.
+     */
+    public void cancel(String tenant, int reservations) {
+        release(tenant(tenant), reservations);
+    }
+
+    /**
+     * Agenda a tarefa na vaga reservada antes por {@link #reserve(String)} ou
+     * {@link #reserveAndWait(String)} para o mesmo tenant.
+     */
+    public void submitReserved(String lane, String tenant, Runnable task) {
+        start(lane, new Task(tenant(tenant), task));
+    }
+
+    /**
+     * Agenda a tarefa aguardando, se necessário, até haver espaço na fila.
+     */
+    public void submitAndWait(Runnable task) throws InterruptedException {
+        submitAndWait(null, null, task);
+    }
+
+    public void submitAndWait(String lane, String tenant, Runnable task) throws InterruptedException {
+        reserveAndWait(tenant);
+        start(lane, new Task(tenant(tenant), task));
+    }
+
+    private void start(String lane, Task task) {
+        if (lane == null) {
+            try {
+                executor.execute(() -> run(task));
+            } catch (RuntimeException e) {
+                release(task.tenant(), 1);
+                throw e;
+            }
+            return;
+        }
+        synchronized (lanes) {
+            ArrayDeque<Task> pending = lanes.get(lane);
+            if (pending != null) {
+                // A lane já tem uma thread drenando: entra no fim da fila dela
+                pending.add(task);
+                return;
+            }
+            lanes.put(lane, new ArrayDeque<>());
+        }
+        try {
+            executor.execute(() -> drain(lane, task));
+        } catch (RuntimeException e) {
+            // Executor encerrado: descarta a lane junto com o que entrou nela nesse meio tempo
+            synchronized (lanes) {
+                release(task.tenant(), 1);
+                lanes.remove(lane).forEach(discarded -> release(discarded.tenant(), 1));
+            }
+            throw e;
+        }
+    }
+
+    // Executa as tarefas da lane em sequência na mesma virtual thread e a remove quando esvazia
+    private void drain(String lane, Task first) {
+        Task task = first;
+        while (task != null) {
+            run(task);
+            synchronized (lanes) {
+                task = lanes.get(lane).poll();
+                if (task == null) {
+                    lanes.remove(lane);
+                }
+            }
+        }
+    }
+
+    private void run(Task task) {
+        Semaphore share = tenantRunning.computeIfAbsent(task.tenant(), id -> new Semaphore(share(maxConcurrency), true));
+        try {
+            share.acquire();
+            try {
+                running.acquire();
+                try {
+                    task.body().run();
+                } finally {
+                    running.release();
+                }
+            } finally {
+                share.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Erro não tratado no processamento do webhook", e);
+        } finally {
+            release(task.tenant(), 1);
+        }
+    }
+
+    private void release(String tenant, int reservations) {
+        synchronized (tenantAdmitted) {
+            tenantAdmitted.computeIfPresent(tenant, (id, count) -> count > reservations ? count - reservations : null);
+        }
+        admitted.release(reservations);
+    }
+
+    private int share(int total) {
+        return Math.max(1, (int) (total * tenantShare));
+    }
+
+    private static String tenant(String tenant) {
+        return tenant != null ? tenant : OllamaScheduler.DEFAULT_TENANT;
+    }
+
+    private int activeLanes() {
+        synchronized (lanes) {
+            return lanes.size();
+        }
+    }
+
+    private int queued() {
+        int inFlight = (maxConcurrency + queueCapacity) - admitted.availablePermits();
+        int active = maxConcurrency - running.availablePermits();
+        return Math.max(0, inFlight - active);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
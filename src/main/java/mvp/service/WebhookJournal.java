@@ -0,0 +1,559 @@
+package mvp.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import mvp.exception.WebhookPayloadTooLargeException;
+import mvp.exception.WebhookRejectedException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Journal local (append-only) dos webhooks recebidos.
+ *
+ * O payload validado é gravado em segmentos mapeados em memória antes do 202, e uma thread
+ * consumidora o entrega ao {@link WebhookProcessingService}. O checkpoint só avança quando o
+ * processamento termina, de modo que um restart reprocessa o que estava em andamento.
+ * Os segmentos já processados ficam retidos por {@code retention-hours} para permitir replay.
+ *
+ * Formato de cada registro: [int tamanho][long timestamp][int crc32][short tamanho do tipo][tipo][payload].
+ * Tamanho 0 indica fim dos dados gravados e -1 indica que o restante do segmento foi pulado.
+ */
+@ApplicationScoped
+public class WebhookJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookJournal.class);
+
+    private static final int LENGTH_SIZE = 4;
+    private static final int HEADER_SIZE = 8 + 4 + 2;
+    private static final int END_OF_SEGMENT = -1;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    public enum FsyncPolicy { ALWAYS, INTERVAL, NEVER }
+
+    public record JournalRecord(long offset, long nextOffset, Instant timestamp, String type, String payload) {
+    }
+
+    @ConfigProperty(name = "webhook.journal.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "webhook.journal.dir", defaultValue = "data/webhook-journal")
+    String dir;
+
+    @ConfigProperty(name = "webhook.journal.segment-size", defaultValue = "67108864")
+    int segmentSize;
+
+    @ConfigProperty(name = "webhook.journal.fsync", defaultValue = "interval")
+    FsyncPolicy fsyncPolicy;
+
+    @ConfigProperty(name = "webhook.journal.fsync-interval-ms", defaultValue = "1000")
+    long fsyncIntervalMs;
+
+    @ConfigProperty(name = "webhook.journal.retention-hours", defaultValue = "72")
+    long retentionHours;
+
+    // Espera, no desligamento, pelos registros ainda em processamento antes de fechar o journal
+    @ConfigProperty(name = "webhook.journal.shutdown-timeout-seconds", defaultValue = "30")
+    long shutdownTimeoutSeconds;
+
+    @Inject
+    WebhookProcessingService processingService;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    // Registros entregues ao processamento e ainda não concluídos (offset -> próximo offset)
+    private final ConcurrentSkipListMap<Long, Long> inFlight = new ConcurrentSkipListMap<>();
+
+    private Path directory;
+    private FileChannel checkpointChannel;
+    private volatile long writePosition;
+    private volatile long readPosition;
+    private volatile long checkpoint;
+    private volatile boolean running;
+    // Arquivos fechados: commits que chegarem depois são ignorados (o registro será reprocessado)
+    private boolean closed;
+    private Thread consumer;
+    private Thread flusher;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Não foi possível abrir o journal de webhooks em " + dir, e);
+        }
+
+        Gauge.builder("webhook.journal.backlog.bytes", this, j -> j.writePosition - j.checkpoint)
+                .description("Bytes do journal ainda não processados")
+                .register(registry);
+        Gauge.builder("webhook.journal.in-flight", inFlight, Map::size)
+                .description("Registros do journal em processamento")
+                .register(registry);
+
+        running = true;
+        consumer = Thread.ofVirtual().name("webhook-journal-consumer").start(this::consume);
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            flusher = Thread.ofVirtual().name("webhook-journal-fsync").start(this::flushPeriodically);
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (!enabled || !running) {
+            return;
+        }
+        running = false;
+        consumer.interrupt();
+        if (flusher != null) {
+            flusher.interrupt();
+        }
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(5));
+            if (flusher != null) {
+                flusher.join(TimeUnit.SECONDS.toMillis(5));
+            }
+            // O executor ainda está ativo: os registros entregues terminam e avançam o checkpoint
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(shutdownTimeoutSeconds);
+            while (!inFlight.isEmpty() && System.nanoTime() - deadline < 0) {
+                Thread.sleep(50);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!inFlight.isEmpty()) {
+            logger.warn("Journal de webhooks fechado com {} registros em processamento; serão reprocessados", inFlight.size());
+        }
+
+        lock.lock();
+        try {
+            closed = true;
+            segments.values().forEach(Segment::force);
+            segments.values().forEach(Segment::close);
+            checkpointChannel.close();
+        } catch (IOException e) {
+            logger.warn("Erro ao fechar o journal de webhooks: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Grava o payload no journal. Retorna o offset do registro.
+     */
+    public long append(String type, String payload) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.UTF_8);
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = HEADER_SIZE + typeBytes.length + payloadBytes.length;
+        int recordLength = LENGTH_SIZE + bodyLength;
+
+        // Sempre sobra espaço para o marcador de fim de segmento
+        if (recordLength + LENGTH_SIZE > segmentSize) {
+            throw new WebhookPayloadTooLargeException("Payload de " + recordLength
+                    + " bytes maior que o segmento do journal (" + segmentSize + " bytes)");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(payloadBytes);
+
+        lock.lock();
+        try {
+            Segment segment = segments.lastEntry().getValue();
+            int position = (int) (writePosition - segment.base);
+            if (position + recordLength + LENGTH_SIZE > segmentSize) {
+                segment.buffer.putInt(position, END_OF_SEGMENT);
+                segment.force();
+                segment = roll(segment.base + segmentSize);
+                position = 0;
+            }
+
+            long offset = segment.base + position;
+            MappedByteBuffer buffer = segment.buffer;
+            int index = position + LENGTH_SIZE;
+            long now = System.currentTimeMillis();
+            buffer.putLong(index, now);
+            buffer.putInt(index + 8, (int) crc.getValue());
+            buffer.putShort(index + 12, (short) typeBytes.length);
+            buffer.put(index + HEADER_SIZE, typeBytes);
+            buffer.put(index + HEADER_SIZE + typeBytes.length, payloadBytes);
+            // O tamanho é gravado por último: o registro só fica visível quando completo
+            buffer.putInt(position, bodyLength);
+            segment.lastWrite = now;
+
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                segment.force();
+            }
+
+            writePosition = offset + recordLength;
+            appended.signalAll();
+            return offset;
+        } catch (IOException e) {
+            logger.error("Falha ao gravar webhook no journal", e);
+            throw new WebhookRejectedException("Falha ao gravar webhook no journal");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reenvia para processamento os registros recebidos no intervalo [from, to).
+     * Não altera o checkpoint. Retorna a quantidade de registros reenviados.
+     */
+    public int replay(Instant from, Instant to) {
+        List<JournalRecord> records = new ArrayList<>();
+        long position;
+        long end = writePosition;
+
+        lock.lock();
+        try {
+            position = segments.firstKey();
+        } finally {
+            lock.unlock();
+        }
+
+        while (position < end) {
+            JournalRecord record = read(position);
+            if (record == null) {
+                break;
+            }
+            if (record.type() != null
+                    && !record.timestamp().isBefore(from)
+                    && record.timestamp().isBefore(to)) {
+                records.add(record);
+            }
+            position = record.nextOffset();
+        }
+
+        Thread.ofVirtual().name("webhook-journal-replay").start(() -> {
+            for (JournalRecord record : records) {
+                try {
+                    processingService.dispatch(record.type(), record.payload(), () -> { });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        });
+
+        logger.info("Replay de {} webhooks entre {} e {}", records.size(), from, to);
+        return records.size();
+    }
+
+    // --- Consumo ---
+
+    private void consume() {
+        while (running) {
+            try {
+                awaitRecord();
+                JournalRecord record = read(readPosition);
+                if (record == null) {
+                    continue;
+                }
+                if (record.type() == null) {
+                    // Fim de segmento: nada a processar
+                    readPosition = record.nextOffset();
+                    commit(record.offset(), record.nextOffset());
+                    continue;
+                }
+                // Registra como pendente antes de avançar a leitura (ver commit)
+                inFlight.put(record.offset(), record.nextOffset());
+                readPosition = record.nextOffset();
+                try {
+                    processingService.dispatch(record.type(), record.payload(),
+                            () -> commit(record.offset(), record.nextOffset()));
+                } catch (InterruptedException e) {
+                    // Não chegou ao executor: não pode segurar o desligamento nem o checkpoint
+                    inFlight.remove(record.offset());
+                    throw e;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Erro ao consumir o journal de webhooks", e);
+            }
+        }
+    }
+
+    private void awaitRecord() throws InterruptedException {
+        lock.lock();
+        try {
+            while (running && readPosition >= writePosition) {
+                appended.await(1, TimeUnit.SECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void commit(long offset, long nextOffset) {
+        // Sob o lock: quem vir o pendente removido (ver onStop) só fecha depois do checkpoint gravado
+        lock.lock();
+        try {
+            inFlight.remove(offset);
+            // Lê a posição antes dos pendentes: o consumidor registra o pendente antes de avançá-la
+            long read = readPosition;
+            Map.Entry<Long, Long> oldest = inFlight.firstEntry();
+            long newCheckpoint = oldest != null ? Math.min(oldest.getKey(), read) : read;
+            if (closed || newCheckpoint <= checkpoint) {
+                return;
+            }
+            checkpoint = newCheckpoint;
+            ByteBuffer buffer = ByteBuffer.allocate(8).putLong(0, newCheckpoint);
+            checkpointChannel.write(buffer, 0);
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                checkpointChannel.force(false);
+            }
+        } catch (IOException e) {
+            logger.warn("Falha ao gravar checkpoint do journal: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushPeriodically() {
+        while (running) {
+            try {
+                Thread.sleep(fsyncIntervalMs);
+                lock.lock();
+                try {
+                    if (closed) {
+                        return;
+                    }
+                    segments.lastEntry().getValue().force();
+                    checkpointChannel.force(false);
+                } finally {
+                    lock.unlock();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                logger.warn("Falha no fsync do journal: " + e.getMessage());
+            }
+        }
+    }
+
+    // --- Leitura ---
+
+    /**
+     * Lê o registro no offset informado. Para o marcador de fim de segmento retorna um registro
+     * sem tipo apontando para o próximo segmento; retorna null se não houver registro válido.
+     */
+    private JournalRecord read(long offset) {
+        Segment segment;
+        lock.lock();
+        try {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+            if (entry == null) {
+                return null;
+            }
+            segment = entry.getValue();
+        } finally {
+            lock.unlock();
+        }
+
+        int position = (int) (offset - segment.base);
+        if (position + LENGTH_SIZE > segmentSize) {
+            return new JournalRecord(offset, segment.base + segmentSize, null, null, null);
+        }
+        return decode(segment, position);
+    }
+
+    private static JournalRecord decode(Segment segment, int position) {
+        MappedByteBuffer buffer = segment.buffer;
+        int length = buffer.getInt(position);
+        long offset = segment.base + position;
+
+        if (length == END_OF_SEGMENT) {
+            return new JournalRecord(offset, segment.base + buffer.capacity(), null, null, null);
+        }
+        if (length < HEADER_SIZE || position + LENGTH_SIZE + length > buffer.capacity()) {
+            return null;
+        }
+
+        int index = position + LENGTH_SIZE;
+        long timestamp = buffer.getLong(index);
+        int expectedCrc = buffer.getInt(index + 8);
+        int typeLength = buffer.getShort(index + 12);
+        int payloadLength = length - HEADER_SIZE - typeLength;
+        if (typeLength <= 0 || payloadLength < 0) {
+            return null;
+        }
+
+        byte[] typeBytes = new byte[typeLength];
+        byte[] payloadBytes = new byte[payloadLength];
+        buffer.get(index + HEADER_SIZE, typeBytes);
+        buffer.get(index + HEADER_SIZE + typeLength, payloadBytes);
+
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(payloadBytes);
+        if ((int) crc.getValue() != expectedCrc) {
+            return null;
+        }
+
+        return new JournalRecord(offset, offset + LENGTH_SIZE + length, Instant.ofEpochMilli(timestamp),
+                new String(typeBytes, StandardCharsets.UTF_8), new String(payloadBytes, StandardCharsets.UTF_8));
+    }
+
+    // --- Segmentos ---
+
+    private void open() throws IOException {
+        directory = Path.of(dir);
+        Files.createDirectories(directory);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList()) {
+                String name = file.getFileName().toString();
+                long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(base, Segment.open(file, base, segmentSize));
+            }
+        }
+        if (segments.isEmpty()) {
+            roll(0);
+        }
+
+        // Recupera a posição de escrita percorrendo o último segmento até o primeiro registro inválido
+        Segment last = segments.lastEntry().getValue();
+        int position = 0;
+        JournalRecord record;
+        while (position + LENGTH_SIZE <= segmentSize && (record = decode(last, position)) != null) {
+            position = (int) (record.nextOffset() - last.base);
+        }
+        if (position + LENGTH_SIZE > segmentSize) {
+            // Queda entre o marcador de fim de segmento e a criação do próximo
+            last = roll(last.base + segmentSize);
+            position = 0;
+        }
+        writePosition = last.base + position;
+
+        checkpointChannel = FileChannel.open(directory.resolve(CHECKPOINT_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        long stored = checkpointChannel.read(buffer, 0) == 8 ? buffer.getLong(0) : 0;
+        checkpoint = Math.max(segments.firstKey(), Math.min(stored, writePosition));
+        readPosition = checkpoint;
+
+        if (readPosition < writePosition) {
+            logger.info("Journal de webhooks: reprocessando {} bytes pendentes", writePosition - readPosition);
+        }
+    }
+
+    private Segment roll(long base) throws IOException {
+        Path file = directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+        Segment segment = Segment.open(file, base, segmentSize);
+        segments.put(base, segment);
+        deleteExpiredSegments();
+        return segment;
+    }
+
+    private void deleteExpiredSegments() {
+        Instant limit = Instant.now().minus(Duration.ofHours(retentionHours));
+        while (segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            boolean processed = oldest.base + segmentSize <= checkpoint;
+            if (!processed || oldest.lastWrite().isAfter(limit)) {
+                return;
+            }
+            segments.pollFirstEntry();
+            oldest.close();
+            try {
+                Files.deleteIfExists(oldest.file);
+            } catch (IOException e) {
+                logger.warn("Não foi possível remover o segmento " + oldest.file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class Segment {
+        final Path file;
+        final long base;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        // Horário (ms) do último registro gravado; o mtime não é atualizado por escritas no mapeamento
+        volatile long lastWrite;
+
+        private Segment(Path file, long base, FileChannel channel, MappedByteBuffer buffer) {
+            this.file = file;
+            this.base = base;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.lastWrite = lastRecordTime();
+        }
+
+        static Segment open(Path file, long base, int size) throws IOException {
+            FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new Segment(file, base, channel, buffer);
+        }
+
+        void force() {
+            buffer.force();
+        }
+
+        Instant lastWrite() {
+            return Instant.ofEpochMilli(lastWrite);
+        }
+
+        // Timestamp do último registro, percorrendo só os tamanhos; segmento vazio conta como novo
+        private long lastRecordTime() {
+            long last = System.currentTimeMillis();
+            int position = 0;
+            while (position + LENGTH_SIZE <= buffer.capacity()) {
+                int length = buffer.getInt(position);
+                if (length < HEADER_SIZE || position + LENGTH_SIZE + length > buffer.capacity()) {
+                    break;
+                }
+                last = buffer.getLong(position + LENGTH_SIZE);
+                position += LENGTH_SIZE + length;
+            }
+            return last;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Erro ao fechar o segmento " + file + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package mvp.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import mvp.exception.WebhookPayloadTooLargeException;
+import org.jboss.logging.Logger;
+
+import java.io.StringReader;
+import java.net.URI;
+
+/**
+ * Processamento dos webhooks recebidos do Jira.
+ * Os recursos apenas validam o payload e o entregam aqui; quando o journal está habilitado
+ * o payload é gravado em disco antes do 202 e processado a partir dele.
+ */
+@ApplicationScoped
+public class WebhookProcessingService {
+
+    private static final Logger LOG = Logger.getLogger(WebhookProcessingService.class);
+
+    public static final String JIRA_COMMENT = "jira-comment";
+    public static final String JIRA_EPIC = "jira-epic";
+    public static final String WEBHOOK_EPIC = "webhook-epic";
+
+    @Inject
+    CommentAcceptService commentAcceptService;
+
+    @Inject
+    WorkItemService workItemService;
+
+    @Inject
+    SupabaseService supabaseService;
+
+    @Inject
+    WebhookExecutor webhookExecutor;
+
+    @Inject
+    WebhookJournal webhookJournal;
+
+    @Inject
+    WebhookDeduplicator webhookDeduplicator;
+
+    @Inject
+    CommentCoalescer commentCoalescer;
+
+    /**
+     * Aceita um payload já validado, descartando entregas repetidas do Jira.
+     * Retorna {@code false} para uma repetição, que não é enfileirada; se o payload for recusado
+     * pelo executor a entrega é esquecida, para que a retentativa do Jira seja processada.
+     * Um payload que não cabe no journal é registrado no log e recusado com 413.
+     */
+    public boolean accept(String type, String deliveryId, JsonObject json, String payload) {
+        if (!webhookDeduplicator.firstDelivery(type, deliveryId, json)) {
+            LOG.info("Webhook " + type + " repetido ignorado (entrega " + deliveryId + ")");
+            return false;
+        }
+        try {
+            enqueue(type, payload);
+            return true;
+        } catch (WebhookPayloadTooLargeException e) {
+            // Mantida no deduplicador: as retentativas seriam recusadas do mesmo jeito
+            LOG.warn("Webhook " + type + " descartado (entrega " + deliveryId + "): " + e.getMessage());
+            throw e;
+        } catch (RuntimeException e) {
+            webhookDeduplicator.forget(type, deliveryId, json);
+            throw e;
+        }
+    }
+
+    /**
+     * Aceita um payload já validado. Com o journal habilitado o payload é persistido e
+     * consumido em segundo plano; caso contrário vai direto para o executor (podendo ser recusado).
+     * Comentários sem comando não passam pelo executor.
+     */
+    public void enqueue(String type, String payload) {
+        if (webhookJournal.isEnabled()) {
+            webhookJournal.append(type, payload);
+            return;
+        }
+        String body = commentBody(type, payload);
+        if (body != null && !isCommand(body)) {
+            // Comentário sem comando só gera o log de ignorado: não ocupa o executor
+            process(type, payload);
+            return;
+        }
+        String lane = lane(payload);
+        String tenant = tenant(payload);
+        if (coalescible(lane, body)) {
+            webhookExecutor.reserve(tenant);
+            commentCoalescer.offer(lane, tenant, payload, () -> { }, merged -> process(type, merged));
+        } else {
+            webhookExecutor.submit(lane, tenant, () -> process(type, payload));
+        }
+    }
+
+    /**
+     * Agenda um registro lido do journal, aguardando espaço no executor.
+     * {@code onDone} é chamado ao final (com sucesso ou erro) para avançar o checkpoint.
+     */
+    public void dispatch(String type, String payload, Runnable onDone) throws InterruptedException {
+        String body = commentBody(type, payload);
+        if (body != null && !isCommand(body)) {
+            try {
+                process(type, payload);
+            } finally {
+                onDone.run();
+            }
+            return;
+        }
+        String lane = lane(payload);
+        String tenant = tenant(payload);
+        if (coalescible(lane, body)) {
+            webhookExecutor.reserveAndWait(tenant);
+            commentCoalescer.offer(lane, tenant, payload, onDone, merged -> process(type, merged));
+            return;
+        }
+        webhookExecutor.submitAndWait(lane, tenant, () -> {
+            try {
+                process(type, payload);
+            } finally {
+                onDone.run();
+            }
+        });
+    }
+
+    /**
+     * Pedidos de nova resposta ("comment IA") seguidos na mesma issue viram uma única execução do
+     * Ollama. "aceito" nunca é agrupado: avança a interação, e antes dele a janela aberta da issue
+     * é fechada para que os pedidos anteriores sejam processados primeiro.
+     */
+    private boolean coalescible(String lane, String body) {
+        if (body == null || lane == null || !commentCoalescer.isEnabled()) {
+            return false;
+        }
+        if (isAccept(body)) {
+            commentCoalescer.flush(lane);
+            return false;
+        }
+        return true;
+    }
+
+    static boolean isCommand(String body) {
+        return isAccept(body) || body.contains("comment IA");
+    }
+
+    static boolean isAccept(String body) {
+        return body.toLowerCase().contains("aceito");
+    }
+
+    // Texto do comentário, ou null se o webhook não for de comentário
+    private static String commentBody(String type, String payload) {
+        if (!JIRA_COMMENT.equals(type)) {
+            return null;
+        }
+        try {
+            JsonObject comment = Json.createReader(new StringReader(payload)).readObject().getJsonObject("comment");
+            return comment != null ? comment.getString("body", "") : "";
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    /**
+     * Lane de execução do webhook: a chave da issue, para que comentários e épicos da mesma issue
+     * sejam processados um de cada vez e na ordem de chegada.
+     */
+    static String lane(String payload) {
+        try {
+            JsonObject issue = Json.createReader(new StringReader(payload)).readObject().getJsonObject("issue");
+            String key = issue != null ? issue.getString("key", null) : null;
+            return key != null && !key.isBlank() ? key : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Tenant do webhook no executor: o host da instância do Jira (issue.self), pelo qual a
+     * empresa é identificada.
+     */
+    static String tenant(String payload) {
+        try {
+            JsonObject issue = Json.createReader(new StringReader(payload)).readObject().getJsonObject("issue");
+            String self = issue != null ? issue.getString("self", null) : null;
+            return self != null ? URI.create(self).getHost() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public void process(String type, String payload) {
+        JsonObject json = Json.createReader(new StringReader(payload)).readObject();
+        switch (type) {
+            case JIRA_COMMENT -> processJiraComment(json);
+            case JIRA_EPIC -> processJiraEpic(json);
+            case WEBHOOK_EPIC -> processWebhookEpic(json);
+            default -> LOG.warn("Tipo de webhook desconhecido: " + type);
+        }
+    }
+
+    private void processJiraComment(JsonObject json) {
+        String key = "N/A";
+        try {
+            JsonObject comment = json.getJsonObject("comment");
+            JsonObject issue = json.getJsonObject("issue");
+
+            String body = comment.getString("body", "");
+            key = issue.getString("key", "N/A");
+            String url = issue.getString("self", "");
+
+            URI uri = new URI(url);
+            String baseUrl = uri.getScheme() + "://" + uri.getHost();
+
+            if (isCommand(body)) {
+                commentAcceptService.processComment("", key, body, "0", baseUrl);
+                supabaseService.saveLog("INFO", "Comentário do Jira processado",
+                        Json.createObjectBuilder().add("issue_key", key).build());
+            } else {
+                supabaseService.saveLog("INFO", "Comentário ignorado",
+                        Json.createObjectBuilder().add("issue_key", key).build());
+            }
+        } catch (Exception e) {
+            LOG.error("Erro ao processar comentário para key " + key, e);
+            supabaseService.saveLog("ERROR", "Erro ao processar comentário",
+                    Json.createObjectBuilder()
+                            .add("issue_key", key)
+                            .add("error_message", String.valueOf(e.getMessage()))
+                            .build());
+        }
+    }
+
+    private void processJiraEpic(JsonObject json) {
+        String key = "N/A";
+
+        try {
+            JsonObject issue = json.getJsonObject("issue");
+            JsonObject fields = issue.getJsonObject("fields");
+
+            key = issue.getString("key");
+            String title = fields.getString("summary");
+            String description = fields.getString("description");
+            String url = issue.getString("self");
+
+            URI uri = new URI(url);
+            String baseUrl = uri.getScheme() + "://" + uri.getHost();
+
+            workItemService.processWebhook("", key, title, description, "0", baseUrl);
+
+            supabaseService.saveLog("INFO", "Épico do Jira processado com sucesso",
+                    Json.createObjectBuilder()
+                            .add("issue_key", key)
+                            .add("title", title)
+                            .build());
+        } catch (Exception e) {
+            LOG.error("Erro ao processar épico do Jira para key " + key, e);
+            supabaseService.saveLog("ERROR", "Erro ao processar épico do Jira",
+                    Json.createObjectBuilder()
+                            .add("issue_key", key)
+                            .add("error_message", String.valueOf(e.getMessage()))
+                            .build());
+        }
+    }
+
+    private void processWebhookEpic(JsonObject jsonPayload) {
+        String key = "N/A";
+
+        try {
+
+            JsonObject issue = jsonPayload.getJsonObject("issue");
+            JsonObject fields = issue.getJsonObject("fields");
+
+            key = issue.getString("key");
+            String title = fields.getString("summary", "Sem título");
+            String description = fields.getString("description", "Sem descrição");
+            String url = issue.getString("self");
+
+            URI uri = new URI(url);
+            String baseUrl = uri.getScheme() + "://" + uri.getHost();
+
+            workItemService.processWebhook("", key, title, description, "0", baseUrl);
+
+            supabaseService.saveLog(
+                    "INFO",
+                    "Épico processado com sucesso",
+                    Json.createObjectBuilder()
+                            .add("issue_key", key)
+                            .add("title", title)
+                            .build()
+            );
+
+        } catch (Exception e) {
+            LOG.error("Erro ao processar épico do Jira (key=" + key + "): " + e.getMessage(), e);
+
+            JsonObjectBuilder err = Json.createObjectBuilder()
+                    .add("issue_key", key)
+                    .add("error_message", String.valueOf(e.getMessage()));
+
+            if (e.getCause() != null) {
+                err.add("cause", String.valueOf(e.getCause().getMessage()));
+            }
+
+            supabaseService.saveLog(
+                    "ERROR",
+                    "Erro ao processar épico",
+                    err.build()
+            );
+        }
+    }
+}
@@ -12,6 +12,7 @@ import mvp.resources.WorkItemResource;
 import mvp.utils.OllamaUtils;
 import mvp.utils.SupabaseUtils;
 import mvp.utils.UtilsService;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,6 +21,9 @@ public class WorkItemService {
 
     private static final Logger logger = LoggerFactory.getLogger(WorkItemService.class);
 
+    @ConfigProperty(name = "ollama.model", defaultValue = "codellama")
+    String model;
+
     @Inject
     OllamaUtils ollamaUtils;
 
@@ -62,14 +66,14 @@ public class WorkItemService {
                             .add("content", message)
                     );
             JsonObject chatPayloadObject = Json.createObjectBuilder()
-                    .add("model", "codellama")  // Define o modelo como "codellama"
+                    .add("model", model)  // Modelo configurado em ollama.model
                     .add("messages", messagesArrayBuilder)
                     .build();
 
             // Convertendo para string o payload
             String chatPayload = chatPayloadObject.toString();
             // Envia mensagem ao Ollama
-            String assistantResponse = ollamaUtils.getChatResponse(chatPayloadObject);
+            String assistantResponse = ollamaUtils.getChatResponse(chatPayloadObject, String.valueOf(companyId));
             if (assistantResponse == null) {
                 return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Failed to send message to Ollama").build();
             }
@@ -0,0 +1,74 @@
+package mvp.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+
+/**
+ * Remove campos dos registros de uma resposta JSON do PostgREST sem montar árvores JSON.
+ *
+ * A resposta (um objeto ou um array de objetos) é copiada token a token do parser para o
+ * gerador; os campos informados, no primeiro nível de cada registro, são pulados junto com o
+ * seu valor. Usado nas respostas repassadas direto ao cliente, como a de usuários sem o
+ * password_hash.
+ */
+public class JsonFieldFilter {
+
+    // Thread-safe e reutilizável
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private JsonFieldFilter() {
+    }
+
+    public static byte[] exclude(byte[] json, Set<String> fields) {
+        if (fields.isEmpty() || json.length == 0) {
+            return json;
+        }
+        try (ByteArrayBuilder out = new ByteArrayBuilder(json.length);
+             JsonParser parser = FACTORY.createParser(json);
+             JsonGenerator generator = FACTORY.createGenerator(out)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                generator.writeStartArray();
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    copyRecord(parser, generator, token, fields);
+                }
+                generator.writeEndArray();
+            } else if (token != null) {
+                copyRecord(parser, generator, token, fields);
+            }
+            generator.flush();
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Resposta JSON inválida do Supabase", e);
+        }
+    }
+
+    // Copia um elemento de nível raiz; se for objeto, sem os campos excluídos
+    private static void copyRecord(JsonParser parser, JsonGenerator generator, JsonToken token, Set<String> fields) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            generator.copyCurrentStructure(parser);
+            return;
+        }
+        generator.writeStartObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (fields.contains(field)) {
+                if (value.isStructStart()) {
+                    parser.skipChildren();
+                }
+                continue;
+            }
+            generator.writeFieldName(field);
+            generator.copyCurrentStructure(parser);
+        }
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,68 @@
+package mvp.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Leitura incremental da resposta em streaming (NDJSON) do endpoint /api/chat do Ollama.
+ *
+ * Cada linha é um objeto {"message": {"content": "..."}, ...}. Os objetos são consumidos
+ * direto do InputStream, token a token, e o campo message.content é anexado a um único
+ * StringBuilder, sem carregar a resposta inteira em memória nem montar árvores JSON.
+ */
+public class OllamaStreamReader {
+
+    // Thread-safe e reutilizável
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private OllamaStreamReader() {
+    }
+
+    /**
+     * Concatena o message.content de todos os fragmentos da resposta.
+     */
+    public static String readContent(InputStream in) throws IOException {
+        StringBuilder content = new StringBuilder();
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.START_OBJECT) {
+                    readFrame(parser, content);
+                } else if (token.isStructStart()) {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return content.toString();
+    }
+
+    // Percorre um fragmento de nível raiz (o parser está no START_OBJECT)
+    private static void readFrame(JsonParser parser, StringBuilder content) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("message".equals(field) && value == JsonToken.START_OBJECT) {
+                readMessage(parser, content);
+            } else if (value.isStructStart()) {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    // Extrai o content do objeto message (o parser está no START_OBJECT)
+    private static void readMessage(JsonParser parser, StringBuilder content) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("content".equals(field) && value == JsonToken.VALUE_STRING) {
+                content.append(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            } else if (value.isStructStart()) {
+                parser.skipChildren();
+            }
+        }
+    }
+}
@@ -3,10 +3,14 @@ package mvp.utils;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
 import jakarta.ws.rs.core.Response;
 import mvp.resources.OllamaChatResource;
+import mvp.service.CompletionCache;
+import mvp.service.OllamaScheduler;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,7 +19,34 @@ public class OllamaUtils {
 
     private static final Logger logger = LoggerFactory.getLogger(OllamaUtils.class);
 
+    @Inject
+    OllamaChatResource ollamaChatResource;
+
+    @Inject
+    CompletionCache completionCache;
+
+    @Inject
+    OllamaScheduler ollamaScheduler;
+
+    // Tempo que o Ollama mantém o modelo carregado após a requisição
+    @ConfigProperty(name = "ollama.keep-alive", defaultValue = "30m")
+    String keepAlive;
+
     public String getChatResponse(JsonObject message) {
+        return getChatResponse(message, OllamaScheduler.DEFAULT_TENANT);
+    }
+
+    /**
+     * Resposta do Ollama para o payload do /api/chat. Conversas idênticas (webhooks duplicados
+     * ou reprocessados) são respondidas pelo {@link CompletionCache}; as demais aguardam vaga
+     * no {@link OllamaScheduler}, na fila da empresa informada.
+     */
+    public String getChatResponse(JsonObject message, String tenant) {
+        return completionCache.getOrCompute(message,
+                () -> ollamaScheduler.call(tenant, () -> requestChatResponse(message)));
+    }
+
+    private String requestChatResponse(JsonObject message) {
         /*JsonObject chatPayload = Json.createObjectBuilder()
                 .add("model", "codellama")
                 .add("messages", Json.createArrayBuilder().add(Json.createObjectBuilder()
@@ -23,7 +54,11 @@ public class OllamaUtils {
                         .add("content", message)))
                 .build();*/
 
-        Response response = new OllamaChatResource().chat(message.toString());
+        if (!message.containsKey("keep_alive")) {
+            message = Json.createObjectBuilder(message).add("keep_alive", keepAlive).build();
+        }
+
+        Response response = ollamaChatResource.chat(message.toString());
         if (response.getStatus() != Response.Status.OK.getStatusCode()) {
             return null;
         }
@@ -0,0 +1,77 @@
+package mvp.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fila circular limitada, sem locks, para vários produtores e um único consumidor.
+ * Cada posição guarda um número de sequência que indica se está livre para escrita ou pronta para leitura.
+ */
+public class RingBuffer<T> {
+
+    private final int mask;
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    /**
+     * @param capacity Capacidade desejada; arredondada para a próxima potência de 2.
+     */
+    public RingBuffer(int capacity) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Insere o item. Retorna false se a fila estiver cheia.
+     */
+    public boolean offer(T item) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, item);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Remove o próximo item, ou retorna null se não houver item pronto. Apenas um consumidor.
+     */
+    public T poll() {
+        long position = head;
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        T item = slots.get(index);
+        slots.set(index, null);
+        sequences.set(index, position + mask + 1);
+        head = position + 1;
+        return item;
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
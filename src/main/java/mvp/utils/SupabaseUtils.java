@@ -1,17 +1,39 @@
 package mvp.utils;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.spi.CDI;
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
 import jakarta.ws.rs.core.Response;
+import mvp.service.ConversationCache;
+import mvp.service.FlowGraphService;
 import mvp.service.SupabaseService;
+import mvp.service.TokenUsageRollups;
 
 import java.util.List;
 
 @ApplicationScoped
 public class SupabaseUtils {
 
-    private static final SupabaseService supabaseService = new SupabaseService();
+    // Instância gerenciada pelo CDI: recebe a configuração do Supabase e compartilha um único cliente HTTP
+    private static SupabaseService supabaseService() {
+        return CDI.current().select(SupabaseService.class).get();
+    }
+
+    // Fluxo de interações em memória (message_processing)
+    private static FlowGraphService flowGraph() {
+        return CDI.current().select(FlowGraphService.class).get();
+    }
+
+    // Histórico de mensagens por work item em memória
+    private static ConversationCache conversations() {
+        return CDI.current().select(ConversationCache.class).get();
+    }
+
+    // Totais de tokens por empresa, projeto e dia
+    private static TokenUsageRollups tokenUsage() {
+        return CDI.current().select(TokenUsageRollups.class).get();
+    }
 
     // Método para salvar WorkItem
     public static boolean saveWorkItem(String workItemId, String title, String description) {
@@ -22,33 +44,33 @@ public class SupabaseUtils {
                 .add("type", "comment")
                 .build();
 
-        Response response = supabaseService.saveWorkItem(payload.toString());
+        Response response = supabaseService().saveWorkItem(payload.toString());
         return response.getStatus() == Response.Status.CREATED.getStatusCode();
     }
 
     // Método para salvar Mensagem
     public static boolean saveMessage(JsonObject payload) {
-        Response response = supabaseService.saveMessage(payload.toString());
+        Response response = supabaseService().saveMessage(payload.toString());
         return response.getStatus() == Response.Status.CREATED.getStatusCode();
     }
 
     // Método para obter a próxima interação
     public static JsonObject getNextInteraction(int interaction) {
-        return supabaseService.getNextInteraction(interaction);
+        return flowGraph().getNextInteraction(interaction);
     }
 
     // Método para obter a interação com base na ordem
     public static JsonObject getNextInteractionOrder(int interaction, int order) {
-        return supabaseService.getNextInteractionOrder(interaction, order);
+        return flowGraph().getNextInteractionOrder(interaction, order);
     }
 
     // Método para verificar se já existe uma mensagem final do assistente
     public static JsonObject hasFinalAssistantMessage(String workItemId) {
-        return supabaseService.hasFinalAssistantMessage(workItemId);
+        return supabaseService().hasFinalAssistantMessage(workItemId);
     }
 
     public static List<JsonObject> getMessagesByWorkItemId(String workItemId){
-        return supabaseService.getMessagesByWorkItemId(workItemId);
+        return conversations().getMessages(workItemId);
     }
 
     public static boolean saveUserMessage(String workItemId, String message, int interaction, int interactionOrder, Long companyId, Long projectId) {
@@ -63,17 +85,16 @@ public class SupabaseUtils {
                 .add("project_id", projectId)
                 .build();
 
-        Response response = supabaseService.saveMessage(payload.toString());
-        return response.getStatus() == Response.Status.CREATED.getStatusCode();
+        return saveConversationMessage(workItemId, payload);
     }
 
     public static Long getCompanyByURL(String url){
-        JsonObject json = supabaseService.getCompanyByURL(url);
+        JsonObject json = supabaseService().getCompanyByURL(url);
         return json.getJsonNumber("id").longValue();
     }
 
     public static Long getProjectByCompanyIdAndKey(Long companyId, String key){
-        JsonObject json = supabaseService.getProjectByCompanyIdAndKey(companyId, key);
+        JsonObject json = supabaseService().getProjectByCompanyIdAndKey(companyId, key);
         return json.getJsonNumber("id").longValue();
     }
 
@@ -87,14 +108,21 @@ public class SupabaseUtils {
                 .add("interaction_order", interactionOrder)
                 .build();
 
-        Response response = supabaseService.saveMessage(payload.toString());
-        return response.getStatus() == Response.Status.CREATED.getStatusCode();
+        return saveConversationMessage(workItemId, payload);
+    }
+
+    // Grava a mensagem, a anexa ao histórico em memória do work item e soma seus tokens
+    private static boolean saveConversationMessage(String workItemId, JsonObject payload) {
+        JsonObject row = supabaseService().saveMessageReturning(payload.toString());
+        conversations().append(workItemId, row);
+        tokenUsage().record(workItemId, row);
+        return row != null;
     }
 
     public static void handleInteraction(JsonObject finalMessage, String comment, int interaction, int interactionOrder) {
         if (comment.toLowerCase().contains("aceito")) {
             int interactionAux = finalMessage != null ? finalMessage.getJsonNumber("interaction").intValue() : 0;
-            JsonObject nextInteraction = supabaseService.getNextInteraction(interactionAux);
+            JsonObject nextInteraction = flowGraph().getNextInteraction(interactionAux);
             //return nextInteraction != null ? nextInteraction.getJsonNumber("interaction").intValue() : 0;
             interaction = nextInteraction != null ? nextInteraction.getJsonNumber("interaction").intValue() : 0;
         }
@@ -104,7 +132,7 @@ public class SupabaseUtils {
     }
 
     public static String prepareChatMessage(int interaction) {
-        JsonObject nextInteraction = supabaseService.getNextInteractionOrder(interaction, 0);
+        JsonObject nextInteraction = flowGraph().getNextInteractionOrder(interaction, 0);
         return nextInteraction != null ? nextInteraction.getString("prompt") : null;
     }
 }
@@ -1,5 +1,6 @@
 package mvp.utils;
 
+import jakarta.enterprise.inject.spi.CDI;
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonReader;
@@ -19,6 +20,11 @@ public class UtilsService {
 
     private static final Logger logger = LoggerFactory.getLogger(UtilsService.class);
 
+    // Os recursos usam o pool HTTP injetado, portanto precisam vir do container CDI
+    private static <T> T bean(Class<T> type) {
+        return CDI.current().select(type).get();
+    }
+
     // Método para remover tags HTML
     public static String removeHtmlTags(String html) {
         // Usando expressão regular para remover tags HTML
@@ -41,12 +47,7 @@ public class UtilsService {
                 .add("text", comment)
                 .build();
 
-        Response response = new WorkItemResource().addComment(workItemId, payload.toString());
-        return response.getStatus() == Response.Status.OK.getStatusCode();
-    }
-
-    public static boolean addTaskToWorkItem(String type, String payload){
-        Response response = new WorkItemResource().createTask(type, payload);
+        Response response = bean(WorkItemResource.class).addComment(workItemId, payload.toString());
         return response.getStatus() == Response.Status.OK.getStatusCode();
     }
 
@@ -56,20 +57,11 @@ public class UtilsService {
                 .add("comment", comment)
                 .build();
 
-        JsonObject json = new SupabaseService().getPatAndUrlFromUser(key.split("-")[0], url);
-        String pat_token = json.getString("pat_token");
-        String user_email = json.getString("email");
-
-        Response response = new JiraResource().addComment(payload.toString(), url, pat_token, user_email);
-        return response.getStatus() == Response.Status.OK.getStatusCode();
-    }
-
-    public static boolean addTaskToJira(String payload, String key, String url){
-        JsonObject json = new SupabaseService().getPatAndUrlFromUser(key.split("-")[0], url);
+        JsonObject json = bean(SupabaseService.class).getPatAndUrlFromUser(key.split("-")[0], url);
         String pat_token = json.getString("pat_token");
         String user_email = json.getString("email");
 
-        Response response = new JiraResource().createIssue(payload, url, user_email, pat_token);
+        Response response = bean(JiraResource.class).addComment(payload.toString(), url, pat_token, user_email);
         return response.getStatus() == Response.Status.OK.getStatusCode();
     }
 }
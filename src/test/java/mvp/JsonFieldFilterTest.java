@@ -0,0 +1,48 @@
+package mvp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import mvp.utils.JsonFieldFilter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Garante que o filtro remove apenas os campos de primeiro nível de cada registro e
+ * preserva o restante da resposta do PostgREST.
+ */
+public class JsonFieldFilterTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testRemovesFieldFromEveryRecord() throws IOException {
+        String body = "[{\"id\":1,\"username\":\"ana\",\"password_hash\":\"$2a$10$x\",\"role\":\"USER\"},"
+                + "{\"id\":2,\"password_hash\":null,\"profile\":{\"password_hash\":\"kept\",\"tags\":[1,2.5,true]}}]";
+
+        JsonNode filtered = filter(body);
+
+        assertEquals(2, filtered.size());
+        assertFalse(filtered.get(0).has("password_hash"));
+        assertFalse(filtered.get(1).has("password_hash"));
+        assertEquals(MAPPER.readTree("{\"id\":1,\"username\":\"ana\",\"role\":\"USER\"}"), filtered.get(0));
+        // Campos aninhados com o mesmo nome não são registros e ficam
+        assertEquals(MAPPER.readTree("{\"password_hash\":\"kept\",\"tags\":[1,2.5,true]}"), filtered.get(1).get("profile"));
+    }
+
+    @Test
+    public void testSingleObjectAndEmptyArray() throws IOException {
+        assertEquals(MAPPER.readTree("{\"id\":7,\"name\":\"x\"}"), filter("{\"id\":7,\"password_hash\":{\"a\":[1]},\"name\":\"x\"}"));
+        assertEquals(MAPPER.readTree("[]"), filter("[]"));
+    }
+
+    private static JsonNode filter(String body) throws IOException {
+        byte[] out = JsonFieldFilter.exclude(body.getBytes(StandardCharsets.UTF_8), Set.of("password_hash"));
+        return MAPPER.readTree(out);
+    }
+}
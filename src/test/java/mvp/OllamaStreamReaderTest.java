@@ -0,0 +1,108 @@
+package mvp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.management.ThreadMXBean;
+import mvp.utils.OllamaStreamReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compara o parser em streaming com a abordagem anterior (toString + split por regex +
+ * ObjectMapper por fragmento) em uma resposta simulada de mais de 10 mil tokens.
+ */
+public class OllamaStreamReaderTest {
+
+    private static final int TOKENS = 12_000;
+    private static final int ITERATIONS = 3;
+
+    @Test
+    public void testStreamingMatchesLegacyParser() throws IOException {
+        byte[] body = ndjson(TOKENS);
+
+        String legacy = legacyRead(new ByteArrayInputStream(body));
+        String streaming = OllamaStreamReader.readContent(new ByteArrayInputStream(body));
+
+        assertEquals(legacy, streaming);
+        assertEquals(TOKENS, streaming.split(" ", -1).length - 1);
+    }
+
+    @Test
+    public void testIgnoresFramesWithoutContent() throws IOException {
+        String body = "{\"model\":\"codellama\",\"message\":{\"role\":\"assistant\",\"content\":\"a{b}\"},\"done\":false}\n"
+                + "{\"model\":\"codellama\",\"message\":{\"role\":\"assistant\",\"images\":null},\"done\":false}\n"
+                + "{\"model\":\"codellama\",\"message\":{\"role\":\"assistant\",\"content\":\"\\\"c\\\"\"},\"done\":true,"
+                + "\"total_duration\":123,\"context\":[1,2,3]}\n";
+
+        assertEquals("a{b}\"c\"", OllamaStreamReader.readContent(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void testAllocatesLessThanLegacyParser() throws IOException {
+        byte[] body = ndjson(TOKENS);
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        // Aquecimento
+        for (int i = 0; i < ITERATIONS; i++) {
+            legacyRead(new ByteArrayInputStream(body));
+            OllamaStreamReader.readContent(new ByteArrayInputStream(body));
+        }
+
+        long legacyBytes = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            legacyRead(new ByteArrayInputStream(body));
+        }
+        legacyBytes = threads.getCurrentThreadAllocatedBytes() - legacyBytes;
+
+        long streamingBytes = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            OllamaStreamReader.readContent(new ByteArrayInputStream(body));
+        }
+        streamingBytes = threads.getCurrentThreadAllocatedBytes() - streamingBytes;
+
+        // Na prática a diferença passa de 50x; a margem evita falsos negativos por ruído do JIT
+        assertTrue(streamingBytes * 4 < legacyBytes,
+                "streaming alocou " + streamingBytes / ITERATIONS + " bytes/op, legado " + legacyBytes / ITERATIONS);
+    }
+
+    // Resposta no formato do /api/chat do Ollama com stream=true: um objeto por token
+    private static byte[] ndjson(int tokens) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < tokens; i++) {
+            sb.append("{\"model\":\"codellama\",\"created_at\":\"2024-10-01T12:00:00.000000Z\",")
+                    .append("\"message\":{\"role\":\"assistant\",\"content\":\"tok")
+                    .append(i)
+                    .append(i % 50 == 0 ? "\\n" : "")
+                    .append(" \"},\"done\":false}\n");
+        }
+        sb.append("{\"model\":\"codellama\",\"created_at\":\"2024-10-01T12:00:00.000000Z\",")
+                .append("\"message\":{\"role\":\"assistant\",\"content\":\"\"},\"done\":true,")
+                .append("\"total_duration\":1000,\"eval_count\":").append(tokens).append("}\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Implementação anterior do OllamaChatResource.chat
+    private static String legacyRead(InputStream in) throws IOException {
+        String jsonResponse = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        ObjectMapper mapper = new ObjectMapper();
+        String[] jsonParts = jsonResponse.split("(?<=})\\s*(?=\\{)");
+        StringBuilder contentBuilder = new StringBuilder();
+        for (String jsonPart : jsonParts) {
+            JsonNode node = mapper.readTree(jsonPart);
+            JsonNode messageNode = node.get("message");
+            if (messageNode != null && messageNode.get("content") != null) {
+                contentBuilder.append(messageNode.get("content").asText());
+            }
+        }
+        return contentBuilder.toString();
+    }
+}
@@ -0,0 +1,74 @@
+package mvp.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Reabre o journal depois de uma queda entre a gravação do marcador de fim de segmento e a
+ * criação do segmento seguinte.
+ */
+public class WebhookJournalTest {
+
+    private static final int SEGMENT_SIZE = 256;
+
+    @TempDir
+    Path dir;
+
+    private final BlockingQueue<String> processed = new LinkedBlockingQueue<>();
+
+    @Test
+    public void testReopensSegmentEndingInMarker() throws Exception {
+        WebhookJournal first = journal();
+        first.onStart(null);
+        String type = WebhookProcessingService.JIRA_COMMENT;
+        String payload = "{\"issue\":{\"key\":\"MVP-1\"}}";
+        long offset = first.append(type, payload);
+        assertEquals(payload, processed.poll(5, TimeUnit.SECONDS));
+        first.onStop(null);
+
+        // O append grava o marcador e força o segmento antes do roll; o processo cai no meio
+        int end = (int) offset + 4 + 14 + type.length() + payload.length();
+        try (FileChannel channel = FileChannel.open(dir.resolve(String.format("%020d.log", 0)), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, -1), end);
+        }
+
+        WebhookJournal reopened = journal();
+        reopened.onStart(null);
+        try {
+            assertEquals(SEGMENT_SIZE, reopened.append(type, "{\"issue\":{\"key\":\"MVP-2\"}}"));
+            assertEquals("{\"issue\":{\"key\":\"MVP-2\"}}", processed.poll(5, TimeUnit.SECONDS));
+        } finally {
+            reopened.onStop(null);
+        }
+    }
+
+    private WebhookJournal journal() {
+        WebhookJournal journal = new WebhookJournal();
+        journal.enabled = true;
+        journal.dir = dir.toString();
+        journal.segmentSize = SEGMENT_SIZE;
+        journal.fsyncPolicy = WebhookJournal.FsyncPolicy.ALWAYS;
+        journal.retentionHours = 72;
+        journal.shutdownTimeoutSeconds = 5;
+        journal.registry = new SimpleMeterRegistry();
+        journal.processingService = new WebhookProcessingService() {
+            @Override
+            public void dispatch(String type, String payload, Runnable onDone) {
+                processed.add(payload);
+                onDone.run();
+            }
+        };
+        return journal;
+    }
+}
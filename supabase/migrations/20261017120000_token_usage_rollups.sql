@@ -0,0 +1,20 @@
+-- Totais de tokens por empresa, projeto, dia (UTC) e remetente, mantidos pelo TokenUsageRollups.
+-- O upsert do flusher usa on_conflict=company_id,project_id,day,sender, que exige a
+-- constraint única abaixo. Mensagens sem projeto identificado entram com project_id 0.
+create table if not exists public.token_usage_rollups (
+    company_id bigint      not null,
+    project_id bigint      not null default 0,
+    day        date        not null,
+    sender     text        not null,
+    tokens     bigint      not null default 0,
+    messages   bigint      not null default 0,
+    updated_at timestamptz not null default now(),
+    constraint token_usage_rollups_key unique (company_id, project_id, day, sender)
+);
+
+-- Consultas do /messages/tokens-summary por empresa e período
+create index if not exists token_usage_rollups_company_day_idx
+    on public.token_usage_rollups (company_id, day);
+
+-- A carga inicial a partir de 'messages' é feita pela aplicação na primeira subida com a
+-- tabela vazia (token-rollups.backfill-on-start) ou por POST /messages/tokens-summary/rebuild.